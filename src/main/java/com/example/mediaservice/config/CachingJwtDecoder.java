@@ -0,0 +1,72 @@
+package com.example.mediaservice.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * JwtDecoder giữ các token đã được kiểm tra chữ ký và claim, để client gửi lại cùng token không phải verify lại.
+ * <p>
+ * Key của cache là SHA-256 của token (không giữ token gốc làm key), mỗi entry hết hạn cùng lúc với token
+ * nhưng không quá maxTtl. Token không hợp lệ không được cache.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maxSize, Duration maxTtl) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new JwtExpiry(maxTtl))
+                .build();
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        return cache.get(hash(token), key -> delegate.decode(token));
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record JwtExpiry(Duration maxTtl) implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            long maxTtlNanos = maxTtl.toNanos();
+            if (jwt.getExpiresAt() == null) {
+                return maxTtlNanos;
+            }
+            long untilExpiry = Duration.between(Instant.now(), jwt.getExpiresAt()).toNanos();
+            return Math.max(0, Math.min(untilExpiry, maxTtlNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
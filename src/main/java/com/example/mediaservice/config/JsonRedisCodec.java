@@ -0,0 +1,81 @@
+package com.example.mediaservice.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Codec JSON cho một họ key trong Redis (post, comment, group...).
+ * Giá trị lưu là chuỗi JSON thuần của DTO, không kèm thông tin class và không bọc Avro.
+ * <p>
+ * Kích thước payload (media.redis.payload.size, số ký tự JSON) và số lỗi encode/decode
+ * (media.redis.codec.errors) được ghi theo type.
+ */
+public class JsonRedisCodec<T> {
+
+    private final Class<T> type;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final DistributionSummary encodedSize;
+    private final DistributionSummary decodedSize;
+    private final Counter encodeErrors;
+    private final Counter decodeErrors;
+
+    public JsonRedisCodec(ObjectMapper objectMapper, Class<T> type) {
+        this(objectMapper, type, Metrics.globalRegistry);
+    }
+
+    public JsonRedisCodec(ObjectMapper objectMapper, Class<T> type, MeterRegistry meterRegistry) {
+        this.type = type;
+        this.reader = objectMapper.readerFor(type);
+        this.writer = objectMapper.writerFor(type);
+        this.encodedSize = payloadSize(meterRegistry, "encode");
+        this.decodedSize = payloadSize(meterRegistry, "decode");
+        this.encodeErrors = codecErrors(meterRegistry, "encode");
+        this.decodeErrors = codecErrors(meterRegistry, "decode");
+    }
+
+    public String encode(T value) throws SerializationException {
+        try {
+            String json = writer.writeValueAsString(value);
+            encodedSize.record(json.length());
+            return json;
+        } catch (JsonProcessingException e) {
+            encodeErrors.increment();
+            throw new SerializationException("Error serializing " + type.getSimpleName() + " to JSON", e);
+        }
+    }
+
+    public T decode(String json) throws SerializationException {
+        try {
+            decodedSize.record(json.length());
+            return reader.readValue(json);
+        } catch (JsonProcessingException e) {
+            decodeErrors.increment();
+            throw new SerializationException("Error deserializing " + type.getSimpleName() + " from JSON", e);
+        }
+    }
+
+    private DistributionSummary payloadSize(MeterRegistry meterRegistry, String operation) {
+        return DistributionSummary.builder("media.redis.payload.size")
+                .description("Size of JSON values written to or read from Redis")
+                .baseUnit("chars")
+                .tag("type", type.getSimpleName())
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private Counter codecErrors(MeterRegistry meterRegistry, String operation) {
+        return Counter.builder("media.redis.codec.errors")
+                .description("JSON values that could not be encoded or decoded")
+                .tag("type", type.getSimpleName())
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
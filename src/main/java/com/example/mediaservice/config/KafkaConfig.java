@@ -7,53 +7,81 @@ import com.example.mediaservice.entity.Post;
 import com.example.mediaservice.entity.User;
 import com.example.mediaservice.entity.relationship.UserChannel;
 import com.example.mediaservice.entity.relationship.UserGroup;
+import com.example.mediaservice.producer.StateProducerService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+
+import java.time.Duration;
 
 
 @Configuration
 public class KafkaConfig {
 
+    // Mỗi lần gửi là một span, trace context được ghi vào header record để listener nối tiếp trace
+    private static <V> KafkaTemplate<String, V> observedTemplate(ProducerFactory<String, V> producerFactory) {
+        KafkaTemplate<String, V> template = new KafkaTemplate<>(producerFactory);
+        template.setObservationEnabled(true);
+        return template;
+    }
+
     @Bean
     public KafkaTemplate<String, User> userTemplate(ProducerFactory<String, User> producerFactory) {
-        return new KafkaTemplate<>(producerFactory);
+        return observedTemplate(producerFactory);
     }
 
     @Bean
     public KafkaTemplate<String, Group> groupTemplate(ProducerFactory<String, Group> producerFactory) {
-        return new KafkaTemplate<>(producerFactory);
+        return observedTemplate(producerFactory);
     }
 
     @Bean
     public KafkaTemplate<String, UserGroup> userGroupTemplate(ProducerFactory<String, UserGroup> producerFactory) {
-        return new KafkaTemplate<>(producerFactory);
+        return observedTemplate(producerFactory);
     }
 
     @Bean
     public KafkaTemplate<String, Channel> channelTemplate(ProducerFactory<String, Channel> producerFactory) {
-        return new KafkaTemplate<>(producerFactory);
+        return observedTemplate(producerFactory);
     }
 
     @Bean
     public KafkaTemplate<String, UserChannel> userChannelTemplate(ProducerFactory<String, UserChannel> producerFactory) {
-        return new KafkaTemplate<>(producerFactory);
+        return observedTemplate(producerFactory);
     }
 
     @Bean
     public KafkaTemplate<String, String> kafkaTemplate(ProducerFactory<String, String> producerFactory) {
-        return new KafkaTemplate<>(producerFactory);
+        return observedTemplate(producerFactory);
     }
 
     @Bean
     public KafkaTemplate<String, Post> postTemplate(ProducerFactory<String, Post> producerFactory) {
-        return new KafkaTemplate<>(producerFactory);
+        return observedTemplate(producerFactory);
     }
 
     @Bean
     public KafkaTemplate<String, Comment> commentTemplate(ProducerFactory<String, Comment> producerFactory) {
-        return new KafkaTemplate<>(producerFactory);
+        return observedTemplate(producerFactory);
+    }
+
+    /**
+     * Error handler of the default listener container factory: a record whose listener throws is retried with
+     * exponential back-off before the partition moves on, so a failed Redis write is not skipped by the next
+     * record. After media.listener.max-retries the record is logged and skipped.
+     */
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler(@Value("${media.listener.max-retries:5}") int maxRetries,
+                                                 @Value("${media.listener.retry-initial-interval:200ms}") Duration initialInterval,
+                                                 @Value("${media.listener.retry-max-interval:5s}") Duration maxInterval) {
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(maxRetries);
+        backOff.setInitialInterval(initialInterval.toMillis());
+        backOff.setMaxInterval(maxInterval.toMillis());
+        return new DefaultErrorHandler(backOff);
     }
 
 //    // Consumer Factory for Group
@@ -221,6 +249,22 @@ public class KafkaConfig {
                 TopicBuilder.name("comment-deleted")
                         .partitions(3)
                         .replicas(1)
+                        .build(),
+                // Trạng thái mới nhất theo id (compacted), dùng để nạp nhanh Redis khi khởi động
+                TopicBuilder.name(StateProducerService.POST_STATE_TOPIC)
+                        .partitions(3)
+                        .replicas(1)
+                        .compact()
+                        .build(),
+                TopicBuilder.name(StateProducerService.COMMENT_STATE_TOPIC)
+                        .partitions(3)
+                        .replicas(1)
+                        .compact()
+                        .build(),
+                TopicBuilder.name(StateProducerService.STATE_SEEDED_TOPIC)
+                        .partitions(1)
+                        .replicas(1)
+                        .compact()
                         .build()
         );
 
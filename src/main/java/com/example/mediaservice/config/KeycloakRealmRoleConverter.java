@@ -0,0 +1,34 @@
+package com.example.mediaservice.config;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chuyển realm role của Keycloak thành authority ROLE_{role}.
+ * <p>
+ * Keycloak đặt role trong object lồng nhau realm_access.roles; JwtGrantedAuthoritiesConverter chỉ đọc claim
+ * ở cấp cao nhất nên không lấy được các role này.
+ */
+public class KeycloakRealmRoleConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+    private static final String REALM_ACCESS_CLAIM = "realm_access";
+    private static final String ROLES = "roles";
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        Map<String, Object> realmAccess = jwt.getClaimAsMap(REALM_ACCESS_CLAIM);
+        if (realmAccess == null || !(realmAccess.get(ROLES) instanceof Collection<?> roles)) {
+            return List.of();
+        }
+        return roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(ROLE_PREFIX + role))
+                .toList();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.mediaservice.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.RecordInterceptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metric bổ sung cho các đường nóng, export qua /actuator/prometheus.
+ * <p>
+ * Sẵn có từ Spring: http.server.requests (controller), spring.kafka.listener (thời gian xử lý từng listener),
+ * spring.kafka.template (thời gian tới khi broker ack), kafka.consumer/producer.* và lettuce.command.*.
+ * Ở đây thêm: media.redis.service (@Timed trên các Redis service), media.kafka.record.lag (từ lúc record
+ * được ghi vào Kafka tới lúc listener nhận), media.kafka.listener.errors (lỗi mà listener bắt và chỉ log).
+ */
+@Configuration
+public class MetricsConfig {
+
+    public static final String LISTENER_ERRORS = "media.kafka.listener.errors";
+    public static final String REDIS_SERVICE_TIMER = "media.redis.service";
+
+    private static final String RECORD_LAG = "media.kafka.record.lag";
+
+    /**
+     * Bật @Timed trên các bean (tag class và method)
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    /**
+     * Được Spring Boot gắn vào kafkaListenerContainerFactory mặc định, chạy trước mỗi listener
+     */
+    @Bean
+    public RecordInterceptor<Object, Object> recordLagInterceptor(MeterRegistry meterRegistry) {
+        return (record, consumer) -> {
+            Timer.builder(RECORD_LAG)
+                    .description("Time between a record being appended to Kafka and its listener receiving it")
+                    .tag("topic", record.topic())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(Math.max(0, System.currentTimeMillis() - record.timestamp()), TimeUnit.MILLISECONDS);
+            return record;
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.mediaservice.config;
+
+import com.example.mediaservice.service.RateLimitService;
+import com.example.mediaservice.service.TokenService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Giới hạn request theo user trên các endpoint ghi event (/post-events, /comment-events) và các endpoint đọc
+ * feed/comment (/post, /comment). User là email trong JWT, request không có JWT được tính theo địa chỉ IP.
+ * <p>
+ * Filter chạy sau Spring Security nên JWT đã được xác thực. Request vượt giới hạn nhận 429 kèm Retry-After.
+ * Giới hạn theo group cho việc ghi post nằm ở PostEventController, vì groupId nằm trong body.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimitService rateLimitService;
+    private final TokenService tokenService;
+
+    public RateLimitFilter(RateLimitService rateLimitService, TokenService tokenService) {
+        this.rateLimitService = rateLimitService;
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !rateLimitService.isEnabled() || limitFor(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RateLimitService.Limit limit = limitFor(request);
+        String email = tokenService.findEmail();
+        String subject = RateLimitService.subjectOf(email, request.getRemoteAddr());
+
+        RateLimitService.Decision decision = rateLimitService.acquire(limit, subject);
+        if (!decision.allowed()) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Too many requests, retry after " + decision.retryAfterSeconds() + "s");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private RateLimitService.Limit limitFor(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean read = HttpMethod.GET.matches(request.getMethod());
+        if (path.startsWith("/post-events/") || path.startsWith("/comment-events/")) {
+            return read ? rateLimitService.readLimit() : rateLimitService.writeLimit();
+        }
+        if (path.startsWith("/post/") || path.startsWith("/comment/")) {
+            return rateLimitService.readLimit();
+        }
+        return null;
+    }
+}
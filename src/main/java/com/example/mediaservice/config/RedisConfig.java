@@ -1,81 +1,273 @@
 package com.example.mediaservice.config;
 
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.example.mediaservice.dto.CommentDto;
+import com.example.mediaservice.dto.GroupDto;
+import com.example.mediaservice.dto.PostDto;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.metrics.MicrometerCommandLatencyRecorder;
+import io.lettuce.core.metrics.MicrometerOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.lettuce.core.tracing.MicrometerTracing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.commonspool2.CommonsObjectPool2Metrics;
+import io.micrometer.observation.ObservationRegistry;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisNode;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.RedisStaticMasterReplicaConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnection;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
-import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.util.StringUtils;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 
 @Configuration
 public class RedisConfig {
 
-    @Value("${spring.data.redis.host}")
+    @Value("${spring.data.redis.host:localhost}")
     private String redisHost;
 
-    @Value("${spring.data.redis.port}")
+    @Value("${spring.data.redis.port:6379}")
     private int redisPort;
 
-    @Value("${spring.data.redis.password}")
+    @Value("${spring.data.redis.password:}")
     private String redisPassword;
 
+    // Danh sách node cluster dạng host:port,host:port - nếu có thì chạy ở chế độ cluster
+    @Value("${spring.data.redis.cluster.nodes:}")
+    private String clusterNodes;
+
+    @Value("${spring.data.redis.cluster.max-redirects:3}")
+    private int clusterMaxRedirects;
+
+    // Danh sách replica dạng host:port,host:port - master là spring.data.redis.host/port
+    @Value("${media.redis.replica-nodes:}")
+    private String replicaNodes;
+
+    // upstream, upstreamPreferred, replica, replicaPreferred, nearest, any...
+    @Value("${spring.data.redis.lettuce.read-from:}")
+    private String readFrom;
+
+    @Value("${media.redis.cluster.topology-refresh-period:30s}")
+    private Duration topologyRefreshPeriod;
+
+    // Timeout cho từng lệnh - lệnh chậm sẽ fail nhanh thay vì giữ thread
+    @Value("${spring.data.redis.timeout:2s}")
+    private Duration commandTimeout;
+
+    @Value("${spring.data.redis.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${spring.data.redis.lettuce.pool.max-active:8}")
+    private int poolMaxActive;
+
+    @Value("${spring.data.redis.lettuce.pool.max-idle:8}")
+    private int poolMaxIdle;
+
+    @Value("${spring.data.redis.lettuce.pool.min-idle:0}")
+    private int poolMinIdle;
+
+    @Value("${spring.data.redis.lettuce.pool.max-wait:500ms}")
+    private Duration poolMaxWait;
+
+    @Value("${spring.data.redis.lettuce.shutdown-timeout:100ms}")
+    private Duration shutdownTimeout;
+
+    // true: lệnh thường dùng chung một connection (auto-pipelining của Lettuce),
+    // pool chỉ dùng cho lệnh blocking/transaction. false: mọi lệnh đều mượn connection từ pool
+    @Value("${media.redis.lettuce.share-native-connection:true}")
+    private boolean shareNativeConnection;
+
+    // Số lệnh gom lại trước khi flush trong executePipelined, 1 = flush từng lệnh
+    @Value("${media.redis.lettuce.pipelining-flush-threshold:128}")
+    private int pipeliningFlushThreshold;
+
+    // 0 = để Lettuce tự chọn theo số CPU
+    @Value("${media.redis.lettuce.io-threads:0}")
+    private int ioThreads;
+
+    @Value("${media.redis.lettuce.computation-threads:0}")
+    private int computationThreads;
+
+    // Mỗi lệnh Redis một span (không kèm tham số lệnh)
+    @Value("${media.redis.lettuce.tracing:true}")
+    private boolean lettuceTracing;
+
+    @Value("${spring.application.name}")
+    private String applicationName;
+
+    /**
+     * Template duy nhất cho mọi service: key, hash key và value đều là chuỗi.
+     * Giá trị có cấu trúc được encode bằng codec riêng của từng họ key (xem các bean JsonRedisCodec bên dưới),
+     * các field đơn giản (user, channel, relationship) lưu thẳng dạng chuỗi, không bọc Avro.
+     */
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
-        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
-        redisTemplate.setConnectionFactory(connectionFactory);
-        // Serializer cho key (String)
-        StringRedisSerializer stringSerializer = new StringRedisSerializer(StandardCharsets.UTF_8);
-        redisTemplate.setKeySerializer(stringSerializer);
-        redisTemplate.setHashKeySerializer(stringSerializer);
-
-        redisTemplate.setValueSerializer(new KafkaAvroRedisSerializer());
-        redisTemplate.setHashValueSerializer(new KafkaAvroRedisSerializer());
-
-        redisTemplate.afterPropertiesSet();
-        return redisTemplate;
+    public StringRedisTemplate redisTemplate(RedisConnectionFactory connectionFactory) {
+        // StringRedisTemplate dùng UTF-8 cho key, hash key, value và hash value
+        return new StringRedisTemplate(connectionFactory);
     }
-//    @Bean
-//    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
-//        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
-//        redisTemplate.setConnectionFactory(connectionFactory);
-//
-//        // 1. Cấu hình ObjectMapper để hỗ trợ chuyển đổi Object <-> JSON
-//        ObjectMapper objectMapper = new ObjectMapper();
-//        objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
-//        // Dòng này rất quan trọng: giúp lưu kèm thông tin class để khi đọc ra có thể cast đúng Object
-//        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
-//
-//        // 2. Sử dụng Jackson2JsonRedisSerializer với ObjectMapper vừa cấu hình
-//        Jackson2JsonRedisSerializer<Object> jsonSerializer = new Jackson2JsonRedisSerializer<>(objectMapper, Object.class);
-//
-//        // 3. Serializer cho Key (luôn là String)
-//        StringRedisSerializer stringSerializer = new StringRedisSerializer();
-//        redisTemplate.setKeySerializer(stringSerializer);
-//        redisTemplate.setHashKeySerializer(stringSerializer);
-//
-//        // 4. Serializer cho Value (là JSON)
-//        redisTemplate.setValueSerializer(jsonSerializer);
-//        redisTemplate.setHashValueSerializer(jsonSerializer);
-//
-//        redisTemplate.afterPropertiesSet();
-//        return redisTemplate;
-//    }
 
+    // group:{gid}:posts, channel:{cid}:posts
+    @Bean
+    public JsonRedisCodec<PostDto> postCodec(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return new JsonRedisCodec<>(objectMapper, PostDto.class, meterRegistry);
+    }
+
+    // post:{pid}:comments, comment:{cid}:replies
+    @Bean
+    public JsonRedisCodec<CommentDto> commentCodec(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return new JsonRedisCodec<>(objectMapper, CommentDto.class, meterRegistry);
+    }
 
+    // user:{email}:groups
     @Bean
-    public LettuceConnectionFactory lettuceConnectionFactory() {
-        RedisStandaloneConfiguration redisStandaloneConfiguration = new RedisStandaloneConfiguration(redisHost, redisPort);
-        redisStandaloneConfiguration.setPassword(redisPassword);
+    public JsonRedisCodec<GroupDto> groupCodec(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return new JsonRedisCodec<>(objectMapper, GroupDto.class, meterRegistry);
+    }
+
+    /**
+     * Thread pool I/O của Lettuce, bộ ghi latency từng lệnh Redis vào Micrometer (lettuce.command.*)
+     * và span cho từng lệnh Redis, con của span đang chạy (request HTTP hoặc listener Kafka)
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ClientResources lettuceClientResources(MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        DefaultClientResources.Builder builder = DefaultClientResources.builder()
+                .commandLatencyRecorder(new MicrometerCommandLatencyRecorder(meterRegistry,
+                        MicrometerOptions.builder().histogram(true).build()));
+
+        if (lettuceTracing) {
+            builder.tracing(new MicrometerTracing(observationRegistry, applicationName));
+        }
+
+        if (ioThreads > 0) {
+            builder.ioThreadPoolSize(ioThreads);
+        }
+        if (computationThreads > 0) {
+            builder.computationThreadPoolSize(computationThreads);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Gauge cho connection pool (commons.pool2.*), đọc từ MBean mà pool tự đăng ký
+     */
+    @Bean
+    public MeterBinder redisPoolMetrics() {
+        return new CommonsObjectPool2Metrics();
+    }
+
+    /**
+     * Chọn topology theo cấu hình:
+     * - spring.data.redis.cluster.nodes có giá trị: Redis Cluster
+     * - media.redis.replica-nodes có giá trị: master/replica tĩnh (đọc theo spring.data.redis.lettuce.read-from)
+     * - còn lại: standalone như trước
+     */
+    @Bean
+    public LettuceConnectionFactory lettuceConnectionFactory(ClientResources clientResources) {
+        List<String> clusterNodeList = parseNodes(clusterNodes);
+        List<String> replicaNodeList = parseNodes(replicaNodes);
+        LettuceConnectionFactory connectionFactory;
+
+        if (!clusterNodeList.isEmpty()) {
+            RedisClusterConfiguration clusterConfiguration = new RedisClusterConfiguration(clusterNodeList);
+            clusterConfiguration.setMaxRedirects(clusterMaxRedirects);
+            clusterConfiguration.setPassword(redisPassword);
+
+            connectionFactory = new LettuceConnectionFactory(clusterConfiguration,
+                    lettuceClientConfiguration(clientResources, true));
+        } else if (!replicaNodeList.isEmpty()) {
+            RedisStaticMasterReplicaConfiguration replicaConfiguration =
+                    new RedisStaticMasterReplicaConfiguration(redisHost, redisPort);
+            replicaNodeList.stream()
+                    .map(RedisNode::fromString)
+                    .forEach(node -> replicaConfiguration.node(node.getHost(), node.getPort()));
+            replicaConfiguration.setPassword(redisPassword);
+
+            connectionFactory = new LettuceConnectionFactory(replicaConfiguration,
+                    lettuceClientConfiguration(clientResources, false));
+        } else {
+            RedisStandaloneConfiguration redisStandaloneConfiguration = new RedisStandaloneConfiguration(redisHost, redisPort);
+            redisStandaloneConfiguration.setPassword(redisPassword);
+
+            connectionFactory = new LettuceConnectionFactory(redisStandaloneConfiguration,
+                    lettuceClientConfiguration(clientResources, false));
+        }
+
+        connectionFactory.setShareNativeConnection(shareNativeConnection);
+        connectionFactory.setPipeliningFlushPolicy(pipeliningFlushThreshold > 1
+                ? LettuceConnection.PipeliningFlushPolicy.buffered(pipeliningFlushThreshold)
+                : LettuceConnection.PipeliningFlushPolicy.flushEachCommand());
+        return connectionFactory;
+    }
+
+    private LettucePoolingClientConfiguration lettuceClientConfiguration(ClientResources clientResources, boolean cluster) {
+        GenericObjectPoolConfig<StatefulConnection<?, ?>> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(poolMaxActive);
+        poolConfig.setMaxIdle(poolMaxIdle);
+        poolConfig.setMinIdle(poolMinIdle);
+        poolConfig.setMaxWait(poolMaxWait);
+        // Tên MBean để CommonsObjectPool2Metrics gắn tag
+        poolConfig.setJmxNamePrefix("redis");
+
+        LettucePoolingClientConfiguration.LettucePoolingClientConfigurationBuilder builder =
+                LettucePoolingClientConfiguration.builder()
+                        .poolConfig(poolConfig)
+                        .clientResources(clientResources)
+                        .commandTimeout(commandTimeout)
+                        .shutdownTimeout(shutdownTimeout);
+
+        if (StringUtils.hasText(readFrom)) {
+            builder.readFrom(ReadFrom.valueOf(readFrom));
+        }
+
+        SocketOptions socketOptions = SocketOptions.builder()
+                .connectTimeout(connectTimeout)
+                .build();
+
+        if (cluster) {
+            // Tự cập nhật bảng slot khi node thay đổi (MOVED/ASK, failover...)
+            ClusterTopologyRefreshOptions refreshOptions = ClusterTopologyRefreshOptions.builder()
+                    .enablePeriodicRefresh(topologyRefreshPeriod)
+                    .enableAllAdaptiveRefreshTriggers()
+                    .build();
+            builder.clientOptions(ClusterClientOptions.builder()
+                    .topologyRefreshOptions(refreshOptions)
+                    .socketOptions(socketOptions)
+                    .timeoutOptions(TimeoutOptions.enabled(commandTimeout))
+                    .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                    .build());
+        } else {
+            // Khi mất kết nối thì từ chối lệnh ngay, không xếp hàng chờ reconnect
+            builder.clientOptions(ClientOptions.builder()
+                    .socketOptions(socketOptions)
+                    .timeoutOptions(TimeoutOptions.enabled(commandTimeout))
+                    .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                    .build());
+        }
+
+        return builder.build();
+    }
 
-        return new LettuceConnectionFactory(redisStandaloneConfiguration);
+    private static List<String> parseNodes(String nodes) {
+        return Arrays.asList(StringUtils.tokenizeToStringArray(nodes, ","));
     }
 }
@@ -1,5 +1,12 @@
 package com.example.mediaservice.config;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
@@ -10,16 +17,43 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
-import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
 
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.time.Duration;
+
 
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity(prePostEnabled = true)
 public class SecurityConfig {
 
+    @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}")
+    private String jwkSetUri;
+
+    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
+    private String issuerUri;
+
+    @Value("${media.jwt.cache-max-size:10000}")
+    private long jwtCacheMaxSize;
+
+    @Value("${media.jwt.cache-max-ttl:5m}")
+    private Duration jwtCacheMaxTtl;
+
+    @Value("${media.jwt.jwk-cache-ttl:15m}")
+    private Duration jwkCacheTtl;
+
+    @Value("${media.jwt.jwk-refresh-ahead:1m}")
+    private Duration jwkRefreshAhead;
+
+    @Value("${media.jwt.jwk-outage-tolerance:12h}")
+    private Duration jwkOutageTolerance;
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
@@ -42,14 +76,38 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * JwtDecoder cho resource server:
+     * - JWK set của Keycloak được cache local và làm mới ở background trước khi hết hạn, nên request không chờ
+     *   Keycloak; khi Keycloak lỗi vẫn dùng key đã cache thêm media.jwt.jwk-outage-tolerance
+     * - token đã verify được cache theo hash tới khi hết hạn (xem {@link CachingJwtDecoder})
+     */
     @Bean
-    public Converter<Jwt, ? extends AbstractAuthenticationToken> jwtAuthenticationConverter() {
-        JwtGrantedAuthoritiesConverter grantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
-        grantedAuthoritiesConverter.setAuthorityPrefix("ROLE_");
-        grantedAuthoritiesConverter.setAuthoritiesClaimName("realm_access.roles");
+    public JwtDecoder jwtDecoder() throws MalformedURLException {
+        JWKSource<SecurityContext> jwkSource = JWKSourceBuilder.create(URI.create(jwkSetUri).toURL())
+                .cache(jwkCacheTtl.toMillis(), JWKSourceBuilder.DEFAULT_CACHE_REFRESH_TIMEOUT)
+                .refreshAheadCache(jwkRefreshAhead.toMillis(), true)
+                .outageTolerant(jwkOutageTolerance.toMillis())
+                .build();
 
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // Claim được kiểm tra bằng validator của Spring bên dưới
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(jwtProcessor);
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        return new CachingJwtDecoder(decoder, jwtCacheMaxSize, jwtCacheMaxTtl);
+    }
+
+    /**
+     * Realm role của Keycloak thành authority ROLE_{role}, dùng cho @PreAuthorize("hasRole(...)")
+     */
+    @Bean
+    public Converter<Jwt, ? extends AbstractAuthenticationToken> jwtAuthenticationConverter() {
         JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
-        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(grantedAuthoritiesConverter);
+        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(new KeycloakRealmRoleConverter());
         return jwtAuthenticationConverter;
     }
 }
@@ -0,0 +1,28 @@
+package com.example.mediaservice.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tracing HTTP -> Kafka -> listener -> Redis qua Micrometer Tracing và OpenTelemetry.
+ * <p>
+ * Span HTTP do Spring tạo sẵn; KafkaTemplate (xem {@link KafkaConfig}) ghi trace context vào header record và
+ * listener đọc lại (spring.kafka.listener.observation-enabled); Lettuce tạo span cho từng lệnh Redis
+ * (xem {@link RedisConfig}). Span được export qua OTLP tới management.otlp.tracing.endpoint, trace id được
+ * Spring Boot thêm vào mỗi dòng log.
+ */
+@Configuration
+public class TracingConfig {
+
+    /**
+     * Ghi mỗi span đã kết thúc ra log, bên cạnh exporter OTLP
+     */
+    @Bean
+    @ConditionalOnProperty(name = "media.tracing.logging-exporter", havingValue = "true")
+    public SpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.mediaservice.consumer;
 
+import com.example.mediaservice.config.MetricsConfig;
 import com.example.mediaservice.entity.Channel;
 import com.example.mediaservice.service.ChannelRedisService;
+import com.example.mediaservice.service.EventLogService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
@@ -14,19 +17,21 @@ import org.springframework.stereotype.Service;
 public class ChannelConsumerService {
 
     private final ChannelRedisService channelRedisService;
+    private final EventLogService eventLogService;
+    private final MeterRegistry meterRegistry;
 
     @KafkaListener(topics = "channel-created", groupId = "media-service-channel-group")
     public void consumeChannelCreated(ConsumerRecord<String, Channel> record) {
         try {
             Channel channel = record.value();
-            log.info("Received channel-created event with key: {} and channel: {}", record.key(), channel);
 
             // Save channel to Redis
             channelRedisService.saveChannel(channel);
 
-            log.info("Successfully processed channel-created event for channel ID: {}", channel.getChannelId());
+            eventLogService.consumed(record);
         } catch (Exception e) {
             log.error("Error processing channel-created event: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "channel-created").increment();
         }
     }
 
@@ -34,14 +39,14 @@ public class ChannelConsumerService {
     public void consumeChannelUpdated(ConsumerRecord<String, Channel> record) {
         try {
             Channel channel = record.value();
-            log.info("Received channel-updated event with key: {} and channel: {}", record.key(), channel);
 
             // Update channel in Redis
             channelRedisService.saveChannel(channel);
 
-            log.info("Successfully processed channel-updated event for channel ID: {}", channel.getChannelId());
+            eventLogService.consumed(record);
         } catch (Exception e) {
             log.error("Error processing channel-updated event: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "channel-updated").increment();
         }
     }
 }
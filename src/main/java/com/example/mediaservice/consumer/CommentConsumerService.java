@@ -1,50 +1,92 @@
 package com.example.mediaservice.consumer;
 
+import com.example.mediaservice.config.MetricsConfig;
+import com.example.mediaservice.dto.CommentDto;
 import com.example.mediaservice.entity.Comment;
+import com.example.mediaservice.producer.StateProducerService;
 import com.example.mediaservice.service.CommentRedisService;
+import com.example.mediaservice.service.EventLogService;
+import com.example.mediaservice.service.FreshnessService;
+import com.example.mediaservice.service.PushService;
+import com.example.mediaservice.service.WriteVisibilityService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+
 @Service
 @AllArgsConstructor
 @Slf4j
 public class CommentConsumerService {
 
     private final CommentRedisService commentRedisService;
+    private final PushService pushService;
+    private final StateProducerService stateProducerService;
+    private final FreshnessService freshnessService;
+    private final WriteVisibilityService writeVisibilityService;
+    private final EventLogService eventLogService;
+    private final MeterRegistry meterRegistry;
 
     @KafkaListener(topics = "comment-created", groupId = "${spring.application.name}")
-    public void consumeCommentCreated(Comment comment) {
+    public void consumeCommentCreated(ConsumerRecord<String, Comment> record) {
+        Comment comment = record.value();
         try {
-            log.info("Received comment-created event: {}", comment);
-            commentRedisService.saveComment(comment);
-            log.info("Successfully processed comment-created event for comment: {}", comment.getId());
+            CommentDto stored = commentRedisService.saveComment(comment);
+            freshnessService.recordApplied(record);
+            writeVisibilityService.markApplied(record);
+            pushService.publish("comment-created", getTopic(comment), stored);
+            stateProducerService.sendCommentState(comment);
+            eventLogService.consumed(record);
         } catch (Exception e) {
             log.error("Error processing comment-created event: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "comment-created").increment();
+            // Ném lại để error handler thử lại record, partition không đi tiếp qua record chưa ghi được
+            throw new RuntimeException("Failed to process comment-created event", e);
         }
     }
 
     @KafkaListener(topics = "comment-updated", groupId = "${spring.application.name}")
-    public void consumeCommentUpdated(Comment comment) {
+    public void consumeCommentUpdated(ConsumerRecord<String, Comment> record) {
+        Comment comment = record.value();
         try {
-            log.info("Received comment-updated event: {}", comment);
-            commentRedisService.saveComment(comment);
-            log.info("Successfully processed comment-updated event for comment: {}", comment.getId());
+            CommentDto stored = commentRedisService.saveComment(comment);
+            freshnessService.recordApplied(record);
+            writeVisibilityService.markApplied(record);
+            pushService.publish("comment-updated", getTopic(comment), stored);
+            stateProducerService.sendCommentState(comment);
+            eventLogService.consumed(record);
         } catch (Exception e) {
             log.error("Error processing comment-updated event: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "comment-updated").increment();
+            throw new RuntimeException("Failed to process comment-updated event", e);
         }
     }
 
     @KafkaListener(topics = "comment-deleted", groupId = "${spring.application.name}")
-    public void consumeCommentDeleted(Comment comment) {
+    public void consumeCommentDeleted(ConsumerRecord<String, Comment> record) {
+        Comment comment = record.value();
         try {
-            log.info("Received comment-deleted event: {}", comment);
             commentRedisService.removeComment(comment);
-            log.info("Successfully processed comment-deleted event for comment: {}", comment.getId());
+            freshnessService.recordApplied(record);
+            writeVisibilityService.markApplied(record);
+            pushService.publish("comment-deleted", getTopic(comment), Map.of("id", String.valueOf(comment.getId())));
+            stateProducerService.sendCommentTombstone(comment);
+            eventLogService.consumed(record);
         } catch (Exception e) {
             log.error("Error processing comment-deleted event: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "comment-deleted").increment();
+            throw new RuntimeException("Failed to process comment-deleted event", e);
         }
     }
-}
 
+    // Comment của post đẩy tới topic post:{postId}, reply đẩy tới comment:{parentId}
+    private String getTopic(Comment comment) {
+        return comment.getPostId() != null
+                ? PushService.POST_TOPIC_PREFIX + comment.getPostId()
+                : PushService.COMMENT_TOPIC_PREFIX + comment.getParentId();
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.mediaservice.consumer;
 
+import com.example.mediaservice.config.MetricsConfig;
 import com.example.mediaservice.entity.Group;
+import com.example.mediaservice.service.EventLogService;
 import com.example.mediaservice.service.GroupRedisService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
@@ -15,12 +18,12 @@ public class GroupConsumerService {
 
     private static final Logger logger = LoggerFactory.getLogger(GroupConsumerService.class);
     private final GroupRedisService groupRedisService;
+    private final EventLogService eventLogService;
+    private final MeterRegistry meterRegistry;
 
     @KafkaListener(topics = "group-created",containerFactory = "kafkaListenerContainerFactory")
     public void consumeGroupCreated(ConsumerRecord<String, Group> record) {
-        String key = record.key();
         Group group = record.value();
-        logger.info("Consumed record from topic='{}' key='{}' value='{}'", record.topic(), key, group);
 
         try {
             if (group.getOwner() == null) {
@@ -28,17 +31,16 @@ public class GroupConsumerService {
                 return;
             }
             groupRedisService.addGroupToUser(group.getOwner().toString(), group);
-            logger.info("Successfully saved group to Redis: {}", group.getId());
+            eventLogService.consumed(record);
         } catch (Exception e) {
             logger.error("Failed to save group to Redis: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "group-created").increment();
         }
     }
 
     @KafkaListener(topics = "group-updated",containerFactory = "kafkaListenerContainerFactory")
     public void consumeGroupUpdated(ConsumerRecord<String, Group> record) {
-        String key = record.key();
         Group group = record.value();
-        logger.info("Consumed record from topic='{}' key='{}' value='{}'", record.topic(), key, group);
 
         try {
             if (group.getOwner() == null) {
@@ -46,9 +48,10 @@ public class GroupConsumerService {
                 return;
             }
             groupRedisService.addGroupToUser(group.getOwner().toString(), group);
-            logger.info("Successfully updated group in Redis: {}", group.getId());
+            eventLogService.consumed(record);
         } catch (Exception e) {
             logger.error("Failed to update group in Redis: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "group-updated").increment();
         }
     }
 }
@@ -12,7 +12,7 @@ public class KafkaConsumerService {
 
     @KafkaListener(id = "myId", topics = "team-events")
     public void listen(String message) {
-        System.out.println("<<< Nhận được tin nhắn: " + message);
+        log.debug("Received team-events message: {}", message);
     }
 
 //    @KafkaListener(id = "update-user", topics = "neo4j-users")
@@ -1,62 +1,97 @@
 package com.example.mediaservice.consumer;
 
+import com.example.mediaservice.config.MetricsConfig;
+import com.example.mediaservice.dto.PostDto;
 import com.example.mediaservice.entity.Post;
+import com.example.mediaservice.producer.StateProducerService;
+import com.example.mediaservice.service.EventLogService;
+import com.example.mediaservice.service.FreshnessService;
 import com.example.mediaservice.service.PostRedisService;
+import com.example.mediaservice.service.PushService;
+import com.example.mediaservice.service.TimelineRedisService;
+import com.example.mediaservice.service.WriteVisibilityService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+
 @Slf4j
 @AllArgsConstructor
 @Service
 public class PostConsumerService {
 
     private final PostRedisService postRedisService;
+    private final TimelineRedisService timelineRedisService;
+    private final PushService pushService;
+    private final StateProducerService stateProducerService;
+    private final FreshnessService freshnessService;
+    private final WriteVisibilityService writeVisibilityService;
+    private final EventLogService eventLogService;
+    private final MeterRegistry meterRegistry;
 
     @KafkaListener(topics = "post-created", groupId = "${spring.application.name}")
-    public void consumePostCreated(Post post) {
+    public void consumePostCreated(ConsumerRecord<String, Post> record) {
+        Post post = record.value();
         try {
-            log.info("Received post-created event: {}", post);
-
             // Add to group
-            postRedisService.addPostToGroup(String.valueOf(post.getGroupId()), post);
+            PostDto stored = postRedisService.addPostToGroup(String.valueOf(post.getGroupId()), post);
 
             // Add to channel if exists
             if (post.getChannelId() != null) {
                 postRedisService.addPostToChannel(String.valueOf(post.getChannelId()), post);
             }
 
-            log.info("Successfully processed post-created event for post: {}", post.getId());
+            freshnessService.recordApplied(record);
+            writeVisibilityService.markApplied(record);
+
+            // Push to members' home timelines
+            timelineRedisService.fanOutPost(stored.groupId(), stored.id(), stored.createdAt());
+
+            publish("post-created", stored);
+            sendState(post, stored);
+
+            eventLogService.consumed(record);
         } catch (Exception e) {
             log.error("Error processing post-created event: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "post-created").increment();
+            // Ném lại để error handler thử lại record, partition không đi tiếp qua record chưa ghi được
+            throw new RuntimeException("Failed to process post-created event", e);
         }
     }
 
     @KafkaListener(topics = "post-updated", groupId = "${spring.application.name}")
-    public void consumePostUpdated(Post post) {
+    public void consumePostUpdated(ConsumerRecord<String, Post> record) {
+        Post post = record.value();
         try {
-            log.info("Received post-updated event: {}", post);
-
             // Update in group
-            postRedisService.addPostToGroup(String.valueOf(post.getGroupId()), post);
+            PostDto stored = postRedisService.addPostToGroup(String.valueOf(post.getGroupId()), post);
 
             // Update in channel if exists
             if (post.getChannelId() != null) {
                 postRedisService.addPostToChannel(String.valueOf(post.getChannelId()), post);
             }
 
-            log.info("Successfully processed post-updated event for post: {}", post.getId());
+            freshnessService.recordApplied(record);
+            writeVisibilityService.markApplied(record);
+            publish("post-updated", stored);
+            sendState(post, stored);
+
+            eventLogService.consumed(record);
         } catch (Exception e) {
             log.error("Error processing post-updated event: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "post-updated").increment();
+            throw new RuntimeException("Failed to process post-updated event", e);
         }
     }
 
     @KafkaListener(topics = "post-deleted", groupId = "${spring.application.name}")
-    public void consumePostDeleted(Post post) {
+    public void consumePostDeleted(ConsumerRecord<String, Post> record) {
+        Post post = record.value();
         try {
-            log.info("Received post-deleted event: {}", post);
-
             // Remove from group
             postRedisService.removePostFromGroup(String.valueOf(post.getGroupId()), String.valueOf(post.getId()));
 
@@ -65,9 +100,34 @@ public class PostConsumerService {
                 postRedisService.removePostFromChannel(String.valueOf(post.getChannelId()), String.valueOf(post.getId()));
             }
 
-            log.info("Successfully processed post-deleted event for post: {}", post.getId());
+            freshnessService.recordApplied(record);
+            writeVisibilityService.markApplied(record);
+
+            Map<String, String> deleted = Map.of("id", String.valueOf(post.getId()));
+            pushService.publish("post-deleted", PushService.GROUP_TOPIC_PREFIX + post.getGroupId(), deleted);
+            if (post.getChannelId() != null) {
+                pushService.publish("post-deleted", PushService.CHANNEL_TOPIC_PREFIX + post.getChannelId(), deleted);
+            }
+            stateProducerService.sendPostTombstone(post);
+
+            eventLogService.consumed(record);
         } catch (Exception e) {
             log.error("Error processing post-deleted event: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "post-deleted").increment();
+            throw new RuntimeException("Failed to process post-deleted event", e);
+        }
+    }
+
+    // Snapshot trong post-state giữ createdAt đã lưu, kể cả khi event update không có createdAt
+    private void sendState(Post post, PostDto stored) {
+        stateProducerService.sendPostState(Post.newBuilder(post).setCreatedAt(stored.createdAt()).build());
+    }
+
+    // Đẩy post tới client đang theo dõi group và channel của nó
+    private void publish(String type, PostDto post) {
+        pushService.publish(type, PushService.GROUP_TOPIC_PREFIX + post.groupId(), post);
+        if (post.channelId() != null) {
+            pushService.publish(type, PushService.CHANNEL_TOPIC_PREFIX + post.channelId(), post);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,10 @@
 package com.example.mediaservice.consumer;
 
+import com.example.mediaservice.config.MetricsConfig;
 import com.example.mediaservice.entity.relationship.UserChannel;
+import com.example.mediaservice.service.EventLogService;
 import com.example.mediaservice.service.UserChannelRedisService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
@@ -14,20 +17,21 @@ import org.springframework.stereotype.Service;
 public class UserChannelConsumerService {
 
     private final UserChannelRedisService userChannelRedisService;
+    private final EventLogService eventLogService;
+    private final MeterRegistry meterRegistry;
 
     @KafkaListener(topics = "user-channel-events", groupId = "media-service-user-channel-group")
     public void consumeUserChannelEvent(ConsumerRecord<String, UserChannel> record) {
         try {
             UserChannel userChannel = record.value();
-            log.info("Received user-channel event with key: {} and userChannel: {}", record.key(), userChannel);
 
             // Save user-channel relationship to Redis
             userChannelRedisService.saveUserChannel(userChannel);
 
-            log.info("Successfully processed user-channel event: userId={}, channelId={}",
-                    userChannel.getUserId(), userChannel.getChannelId());
+            eventLogService.consumed(record);
         } catch (Exception e) {
             log.error("Error processing user-channel event: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "user-channel-events").increment();
         }
     }
 }
@@ -1,7 +1,10 @@
 package com.example.mediaservice.consumer;
 
+import com.example.mediaservice.config.MetricsConfig;
 import com.example.mediaservice.entity.User;
+import com.example.mediaservice.service.EventLogService;
 import com.example.mediaservice.service.UserRedisService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
@@ -15,35 +18,35 @@ public class UserConsumerService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserConsumerService.class);
     private final UserRedisService userRedisService;
+    private final EventLogService eventLogService;
+    private final MeterRegistry meterRegistry;
 
 
     @KafkaListener(topics = "user-update", containerFactory = "kafkaListenerContainerFactory")
     public void read(ConsumerRecord<String, User> record){
-        String key = record.key();
         User user = record.value();
-        logger.info("Consumed record from topic='{}' key='{}' value='{}'", record.topic(), key, user);
 
         // Save user to Redis
         try {
             userRedisService.saveUser(user);
-            logger.info("Successfully saved user to Redis: {}", user.getEmail());
+            eventLogService.consumed(record);
         } catch (Exception e) {
             logger.error("Failed to save user to Redis: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "user-update").increment();
         }
     }
 
     @KafkaListener(topics = "user-create", containerFactory = "kafkaListenerContainerFactory")
     public void readCreate(ConsumerRecord<String, User> record) {
-        String key = record.key();
         User user = record.value();
-        logger.info("Consumed record from topic='{}' key='{}' value='{}'", record.topic(), key, user);
 
         // Save user to Redis
         try {
             userRedisService.saveUser(user);
-            logger.info("Successfully saved user to Redis: {}", user.getEmail());
+            eventLogService.consumed(record);
         } catch (Exception e) {
             logger.error("Failed to save user to Redis: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "user-create").increment();
         }
     }
 
@@ -1,7 +1,10 @@
 package com.example.mediaservice.consumer;
 
+import com.example.mediaservice.config.MetricsConfig;
 import com.example.mediaservice.entity.relationship.UserGroup;
+import com.example.mediaservice.service.EventLogService;
 import com.example.mediaservice.service.UserGroupRedisService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
@@ -15,34 +18,32 @@ public class UserGroupConsumerService {
 
     private static final Logger logger = LoggerFactory.getLogger(UserGroupConsumerService.class);
     private final UserGroupRedisService userGroupRedisService;
+    private final EventLogService eventLogService;
+    private final MeterRegistry meterRegistry;
 
     @KafkaListener(topics = "user-group-create")
     public void consumeUserGroupCreate(ConsumerRecord<String, UserGroup> record) {
-        String key = record.key();
         UserGroup userGroup = record.value();
-        logger.info("Consumed record from topic='{}' key='{}' value='{}'", record.topic(), key, userGroup);
 
         try {
             userGroupRedisService.saveUserGroup(userGroup);
-            logger.info("Successfully saved user-group relationship to Redis: User={}, Group={}, Type={}",
-                    userGroup.getUserId(), userGroup.getGroupId(), userGroup.getUserGroupRelationship());
+            eventLogService.consumed(record);
         } catch (Exception e) {
             logger.error("Failed to save user-group relationship to Redis: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "user-group-create").increment();
         }
     }
 
     @KafkaListener(topics = "user-group-join")
     public void consumeUserGroupJoin(ConsumerRecord<String, UserGroup> record) {
-        String key = record.key();
         UserGroup userGroup = record.value();
-        logger.info("Consumed record from topic='{}' key='{}' value='{}'", record.topic(), key, userGroup);
 
         try {
             userGroupRedisService.saveUserGroup(userGroup);
-            logger.info("Successfully saved user-group join relationship to Redis: User={}, Group={}",
-                    userGroup.getUserId(), userGroup.getGroupId());
+            eventLogService.consumed(record);
         } catch (Exception e) {
             logger.error("Failed to save user-group join relationship to Redis: {}", e.getMessage(), e);
+            meterRegistry.counter(MetricsConfig.LISTENER_ERRORS, "topic", "user-group-join").increment();
         }
     }
 }
@@ -1,12 +1,19 @@
 package com.example.mediaservice.controller;
 
+import com.example.mediaservice.dto.BatchResultDto;
+import com.example.mediaservice.dto.PageDto;
 import com.example.mediaservice.service.ChannelRedisService;
 import com.example.mediaservice.service.UserChannelRedisService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -15,9 +22,11 @@ import java.util.Set;
 @AllArgsConstructor
 public class ChannelController {
 
+    private static final int MAX_BATCH_SIZE = 500;
 
     private final ChannelRedisService channelRedisService;
     private final UserChannelRedisService userChannelRedisService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Get channel information by ID
@@ -25,7 +34,7 @@ public class ChannelController {
     @GetMapping("/{channelId}")
     public ResponseEntity<?> getChannel(@PathVariable String channelId) {
         try {
-            Map<String, Object> channel = channelRedisService.getChannel(channelId);
+            Map<String, String> channel = channelRedisService.getChannel(channelId);
             if (channel == null || channel.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body("Channel not found in cache");
@@ -37,13 +46,31 @@ public class ChannelController {
         }
     }
 
+    /**
+     * Get many channels by ID in one request. IDs not in the cache are listed in missing.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> getChannels(@RequestBody List<String> channelIds) {
+        try {
+            Set<String> ids = new LinkedHashSet<>(channelIds);
+            if (ids.size() > MAX_BATCH_SIZE) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("At most " + MAX_BATCH_SIZE + " channels can be requested at once");
+            }
+            return ResponseEntity.ok(BatchResultDto.of(ids, channelRedisService.getChannels(ids)));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to retrieve channels from cache: " + e.getMessage());
+        }
+    }
+
     /**
      * Get all channels for a group
      */
     @GetMapping("/group/{groupId}")
     public ResponseEntity<?> getGroupChannels(@PathVariable String groupId) {
         try {
-            Set<Map<String, Object>> channels = channelRedisService.getGroupChannels(groupId);
+            Set<Map<String, String>> channels = channelRedisService.getGroupChannels(groupId);
             return ResponseEntity.ok(channels);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -52,26 +79,44 @@ public class ChannelController {
     }
 
     /**
-     * Get all users in a channel
+     * Get users in a channel. Without a cursor the whole set is returned; with a cursor
+     * ("0" for the first page) one SSCAN page is returned together with the next cursor.
      */
     @GetMapping("/{channelId}/users")
-    public ResponseEntity<?> getChannelUsers(@PathVariable String channelId) {
+    public ResponseEntity<?> getChannelUsers(@PathVariable String channelId,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(defaultValue = "500") int count) {
         try {
-            Set<Object> users = userChannelRedisService.getChannelUsers(channelId);
-            return ResponseEntity.ok(users);
+            if (cursor == null) {
+                Set<String> users = userChannelRedisService.getChannelUsers(channelId);
+                return ResponseEntity.ok(users);
+            }
+
+            PageDto<String> page = userChannelRedisService.scanChannelUsers(channelId, cursor, NdjsonStreams.pageSize(count));
+            return ResponseEntity.ok(page);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to retrieve channel users from cache: " + e.getMessage());
         }
     }
 
+    /**
+     * Stream all users in a channel as NDJSON, written page by page as SSCAN walks the set
+     */
+    @GetMapping(value = "/{channelId}/users/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamChannelUsers(@PathVariable String channelId,
+                                                                    @RequestParam(defaultValue = "500") int count) {
+        return NdjsonStreams.stream(objectMapper,
+                pages -> userChannelRedisService.forEachChannelUsersPage(channelId, NdjsonStreams.pageSize(count), pages));
+    }
+
     /**
      * Get all channels a user is in
      */
     @GetMapping("/user/{userId}")
     public ResponseEntity<?> getUserChannels(@PathVariable String userId) {
         try {
-            Set<Object> channels = userChannelRedisService.getUserChannels(userId);
+            Set<String> channels = userChannelRedisService.getUserChannels(userId);
             return ResponseEntity.ok(channels);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -85,7 +130,7 @@ public class ChannelController {
     @GetMapping("/relationship/{userId}/{channelId}")
     public ResponseEntity<?> getUserChannelRelationship(@PathVariable String userId, @PathVariable String channelId) {
         try {
-            Map<String, Object> relationship = userChannelRedisService.getUserChannel(userId, channelId);
+            Map<String, String> relationship = userChannelRedisService.getUserChannel(userId, channelId);
             if (relationship == null || relationship.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body("User-channel relationship not found");
@@ -103,7 +148,7 @@ public class ChannelController {
     @GetMapping("/group/{groupId}/default")
     public ResponseEntity<?> getDefaultChannel(@PathVariable String groupId) {
         try {
-            Map<String, Object> defaultChannel = channelRedisService.getDefaultChannelForGroup(groupId);
+            Map<String, String> defaultChannel = channelRedisService.getDefaultChannelForGroup(groupId);
             if (defaultChannel == null || defaultChannel.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body("Default channel not found for group");
@@ -115,4 +160,3 @@ public class ChannelController {
         }
     }
 }
-
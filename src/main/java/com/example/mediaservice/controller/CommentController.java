@@ -2,10 +2,12 @@ package com.example.mediaservice.controller;
 
 import com.example.mediaservice.dto.CommentDto;
 import com.example.mediaservice.service.CommentRedisService;
+import com.example.mediaservice.service.WriteVisibilityService;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -15,15 +17,26 @@ import java.util.List;
 public class CommentController {
 
     private final CommentRedisService commentRedisService;
+    private final WriteVisibilityService writeVisibilityService;
 
     /**
-     * Lấy tất cả comments của một bài post
+     * Lấy tất cả comments của một bài post.
+     * Các GET của controller nhận header X-Write-Token trả về khi ghi, và chờ ngắn tới khi lần ghi đó hiển thị.
      */
     @GetMapping("/post/{postId}")
-    public ResponseEntity<?> getCommentsByPost(@PathVariable String postId) {
+    public ResponseEntity<?> getCommentsByPost(@PathVariable String postId, WebRequest request,
+                                               @RequestHeader(value = WriteVisibilityService.WRITE_TOKEN_HEADER, required = false) String writeToken) {
         try {
+            awaitWrite(writeToken);
+            // Trả 304 nếu If-None-Match trùng ETag (epoch + version), không cần đọc hash comment
+            if (request.checkNotModified(commentRedisService.getPostCommentsETag(postId))) {
+                return null;
+            }
             List<CommentDto> comments = commentRedisService.getCommentsByPost(postId);
             return ResponseEntity.ok(comments);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to retrieve comments: " + e.getMessage());
@@ -34,10 +47,18 @@ public class CommentController {
      * Lấy tất cả replies của một comment
      */
     @GetMapping("/replies/{commentId}")
-    public ResponseEntity<?> getRepliesByComment(@PathVariable String commentId) {
+    public ResponseEntity<?> getRepliesByComment(@PathVariable String commentId, WebRequest request,
+                                                 @RequestHeader(value = WriteVisibilityService.WRITE_TOKEN_HEADER, required = false) String writeToken) {
         try {
+            awaitWrite(writeToken);
+            if (request.checkNotModified(commentRedisService.getCommentRepliesETag(commentId))) {
+                return null;
+            }
             List<CommentDto> replies = commentRedisService.getRepliesByComment(commentId);
             return ResponseEntity.ok(replies);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to retrieve replies: " + e.getMessage());
@@ -48,13 +69,18 @@ public class CommentController {
      * Lấy một comment cụ thể theo ID từ bài post
      */
     @GetMapping("/post/{postId}/{commentId}")
-    public ResponseEntity<?> getCommentById(@PathVariable String postId, @PathVariable String commentId) {
+    public ResponseEntity<?> getCommentById(@PathVariable String postId, @PathVariable String commentId,
+                                            @RequestHeader(value = WriteVisibilityService.WRITE_TOKEN_HEADER, required = false) String writeToken) {
         try {
+            awaitWrite(writeToken);
             CommentDto comment = commentRedisService.getCommentById(postId, commentId);
             if (comment == null) {
                 return ResponseEntity.notFound().build();
             }
             return ResponseEntity.ok(comment);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to retrieve comment: " + e.getMessage());
@@ -65,16 +91,28 @@ public class CommentController {
      * Lấy một reply cụ thể theo ID từ comment cha
      */
     @GetMapping("/reply/{parentCommentId}/{replyId}")
-    public ResponseEntity<?> getReplyById(@PathVariable String parentCommentId, @PathVariable String replyId) {
+    public ResponseEntity<?> getReplyById(@PathVariable String parentCommentId, @PathVariable String replyId,
+                                          @RequestHeader(value = WriteVisibilityService.WRITE_TOKEN_HEADER, required = false) String writeToken) {
         try {
+            awaitWrite(writeToken);
             CommentDto reply = commentRedisService.getReplyById(parentCommentId, replyId);
             if (reply == null) {
                 return ResponseEntity.notFound().build();
             }
             return ResponseEntity.ok(reply);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to retrieve reply: " + e.getMessage());
         }
     }
+
+    // Chờ lần ghi của write token hiển thị trong Redis (tối đa media.visibility.max-wait)
+    private void awaitWrite(String writeToken) {
+        if (writeToken != null) {
+            writeVisibilityService.awaitVisible(writeToken);
+        }
+    }
 }
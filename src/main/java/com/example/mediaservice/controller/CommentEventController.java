@@ -1,20 +1,31 @@
 package com.example.mediaservice.controller;
 
+import com.example.mediaservice.dto.BulkResultDto;
 import com.example.mediaservice.dto.CommentDto;
+import com.example.mediaservice.dto.FeedChangesDto;
 import com.example.mediaservice.entity.Comment;
 import com.example.mediaservice.entity.CommentEventType;
 import com.example.mediaservice.entity.User;
 import com.example.mediaservice.producer.CommentProducerService;
+import com.example.mediaservice.service.BulkIngestService;
 import com.example.mediaservice.service.CommentRedisService;
+import com.example.mediaservice.service.RateLimitService;
 import com.example.mediaservice.service.TokenService;
+import com.example.mediaservice.service.WriteVisibilityService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/comment-events")
@@ -22,15 +33,24 @@ import java.util.UUID;
 @Slf4j
 public class CommentEventController {
 
+    private static final int MAX_CHANGES_PAGE_SIZE = 1000;
+
     private final CommentProducerService commentProducerService;
     private final CommentRedisService commentRedisService;
     private final TokenService tokenService;
+    private final BulkIngestService bulkIngestService;
+    private final WriteVisibilityService writeVisibilityService;
+    private final RateLimitService rateLimitService;
 
     /**
-     * Tạo comment mới cho bài post
+     * Tạo comment mới cho bài post.
+     * Trả 202 ngay, không chờ Kafka. writeToken=true chờ Kafka xác nhận và trả header X-Write-Token, dùng cho các GET
+     * để chờ comment hiển thị; waitForVisibility=true trả 201 khi comment đã đọc được, 202 nếu chờ quá lâu.
      */
     @PostMapping("/create/comment")
-    public ResponseEntity<String> createCommentForPost(@RequestBody CommentDto commentDto) {
+    public ResponseEntity<String> createCommentForPost(@RequestBody CommentDto commentDto,
+                                                       @RequestParam(defaultValue = "false") boolean writeToken,
+                                                       @RequestParam(defaultValue = "false") boolean waitForVisibility) {
         try {
             if (commentDto.postId() == null) {
                 return ResponseEntity.badRequest()
@@ -60,13 +80,10 @@ public class CommentEventController {
                     .setContent(commentDto.content())
                     .setCreatedAt(timestamp)
                     .build();
-            log.info("Received comment creation request:" + comment);
 
             // Send event to Kafka
-            commentProducerService.sendCommentCreated(comment);
-
-            return ResponseEntity.accepted()
-                    .body("Comment creation request accepted. Comment ID: " + commentId);
+            return writeAccepted(commentProducerService.sendCommentCreated(comment), writeToken, waitForVisibility, HttpStatus.CREATED,
+                    "Comment creation request accepted. Comment ID: " + commentId);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to process comment creation request: " + e.getMessage());
@@ -74,10 +91,12 @@ public class CommentEventController {
     }
 
     /**
-     * Tạo reply cho một comment khác
+     * Tạo reply cho một comment khác, writeToken và waitForVisibility như khi tạo comment
      */
     @PostMapping("/create/reply")
-    public ResponseEntity<String> createReplyForComment(@RequestBody CommentDto commentDto) {
+    public ResponseEntity<String> createReplyForComment(@RequestBody CommentDto commentDto,
+                                                        @RequestParam(defaultValue = "false") boolean writeToken,
+                                                        @RequestParam(defaultValue = "false") boolean waitForVisibility) {
         try {
             if (commentDto.parentId() == null) {
                 return ResponseEntity.badRequest()
@@ -109,10 +128,8 @@ public class CommentEventController {
                     .build();
 
             // Send event to Kafka
-            commentProducerService.sendCommentCreated(comment);
-
-            return ResponseEntity.accepted()
-                    .body("Reply creation request accepted. Reply ID: " + commentId);
+            return writeAccepted(commentProducerService.sendCommentCreated(comment), writeToken, waitForVisibility, HttpStatus.CREATED,
+                    "Reply creation request accepted. Reply ID: " + commentId);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to process reply creation request: " + e.getMessage());
@@ -120,10 +137,35 @@ public class CommentEventController {
     }
 
     /**
-     * Cập nhật comment hoặc reply
+     * Tạo nhiều comment/reply trong một request, body là JSON array hoặc NDJSON.
+     * Phần tử có postId là comment của bài post, chỉ có parentId là reply. createdAt có sẵn được giữ nguyên (import).
+     * Trả 202 nếu mọi phần tử được Kafka nhận, 207 kèm trạng thái từng phần tử nếu không.
+     * Mỗi phần tử bị tính một token ghi của người gửi (như một request ghi); phần tử vượt giới hạn bị reject.
+     */
+    @PostMapping(value = "/create/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> createComments(InputStream body, HttpServletRequest request) {
+        try {
+            String subject = RateLimitService.subjectOf(tokenService.findEmail(), request.getRemoteAddr());
+            BulkResultDto result = bulkIngestService.ingest(body, CommentDto.class,
+                    commentDto -> prepareNewComment(commentDto, subject), commentProducerService::sendCommentCreated);
+
+            HttpStatus status = result.error() == null && result.accepted() == result.items().size()
+                    ? HttpStatus.ACCEPTED
+                    : HttpStatus.MULTI_STATUS;
+            return ResponseEntity.status(status).body(result);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to process bulk comment creation request: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cập nhật comment hoặc reply, waitForVisibility=true trả 200 khi bản cập nhật đã đọc được
      */
     @PutMapping("/update/{commentId}")
-    public ResponseEntity<String> updateComment(@PathVariable String commentId, @RequestBody CommentDto commentDto) {
+    public ResponseEntity<String> updateComment(@PathVariable String commentId, @RequestBody CommentDto commentDto,
+                                                @RequestParam(defaultValue = "false") boolean writeToken,
+                                                @RequestParam(defaultValue = "false") boolean waitForVisibility) {
         try {
             long timestamp = System.currentTimeMillis();
 
@@ -148,10 +190,8 @@ public class CommentEventController {
                     .build();
 
             // Send event to Kafka
-            commentProducerService.sendCommentUpdated(comment);
-
-            return ResponseEntity.accepted()
-                    .body("Comment update request accepted. Comment ID: " + commentId);
+            return writeAccepted(commentProducerService.sendCommentUpdated(comment), writeToken, waitForVisibility, HttpStatus.OK,
+                    "Comment update request accepted. Comment ID: " + commentId);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to process comment update request: " + e.getMessage());
@@ -198,8 +238,12 @@ public class CommentEventController {
      * Lấy tất cả comments của một bài post
      */
     @GetMapping("/post/{postId}")
-    public ResponseEntity<?> getCommentsByPost(@PathVariable String postId) {
+    public ResponseEntity<?> getCommentsByPost(@PathVariable String postId, WebRequest request) {
         try {
+            // Trả 304 nếu If-None-Match trùng ETag (epoch + version), không cần đọc hash comment
+            if (request.checkNotModified(commentRedisService.getPostCommentsETag(postId))) {
+                return null;
+            }
             List<CommentDto> comments = commentRedisService.getCommentsByPost(postId);
             return ResponseEntity.ok(comments);
         } catch (Exception e) {
@@ -212,8 +256,11 @@ public class CommentEventController {
      * Lấy tất cả replies của một comment
      */
     @GetMapping("/comment/{commentId}/replies")
-    public ResponseEntity<?> getRepliesByComment(@PathVariable String commentId) {
+    public ResponseEntity<?> getRepliesByComment(@PathVariable String commentId, WebRequest request) {
         try {
+            if (request.checkNotModified(commentRedisService.getCommentRepliesETag(commentId))) {
+                return null;
+            }
             List<CommentDto> replies = commentRedisService.getRepliesByComment(commentId);
             return ResponseEntity.ok(replies);
         } catch (Exception e) {
@@ -222,6 +269,45 @@ public class CommentEventController {
         }
     }
 
+    /**
+     * Lấy các comment của post được tạo, sửa hoặc xóa sau since ("epoch-version", rỗng hoặc 0 = mọi thay đổi còn
+     * trong change log). Dùng epoch-version trả về làm since cho lần gọi sau; epoch đổi thì resyncRequired=true.
+     */
+    @GetMapping("/post/{postId}/changes")
+    public ResponseEntity<?> getPostCommentChanges(@PathVariable String postId,
+                                                   @RequestParam(defaultValue = "0") String since,
+                                                   @RequestParam(defaultValue = "500") int limit) {
+        try {
+            FeedChangesDto<CommentDto> changes = commentRedisService.getPostCommentChanges(postId, since, changesPageSize(limit));
+            return ResponseEntity.ok(changes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to retrieve comment changes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lấy các reply của comment thay đổi sau since ("epoch-version")
+     */
+    @GetMapping("/comment/{commentId}/replies/changes")
+    public ResponseEntity<?> getCommentReplyChanges(@PathVariable String commentId,
+                                                    @RequestParam(defaultValue = "0") String since,
+                                                    @RequestParam(defaultValue = "500") int limit) {
+        try {
+            FeedChangesDto<CommentDto> changes = commentRedisService.getCommentReplyChanges(commentId, since, changesPageSize(limit));
+            return ResponseEntity.ok(changes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to retrieve reply changes: " + e.getMessage());
+        }
+    }
+
     /**
      * Lấy một comment cụ thể từ post
      */
@@ -255,5 +341,71 @@ public class CommentEventController {
                     .body("Failed to retrieve reply: " + e.getMessage());
         }
     }
-}
 
+    // Mặc định trả 202 ngay mà không chờ Kafka xác nhận. writeToken=true chờ Kafka xác nhận để trả write token
+    // trong header X-Write-Token; waitForVisibility=true chờ thêm tới khi consumer ghi Redis xong, trả
+    // visibleStatus nếu kịp, 202 nếu hết media.visibility.max-wait
+    private ResponseEntity<String> writeAccepted(CompletableFuture<? extends SendResult<?, ?>> send, boolean writeToken,
+                                                 boolean waitForVisibility, HttpStatus visibleStatus, String message) {
+        if (!writeToken && !waitForVisibility) {
+            send.whenComplete((result, e) -> {
+                if (e != null) {
+                    log.error("Kafka did not accept event: {}", e.getMessage(), e);
+                }
+            });
+            return ResponseEntity.accepted().body(message);
+        }
+        String token = writeVisibilityService.awaitToken(send);
+        HttpStatus status = waitForVisibility && writeVisibilityService.awaitVisible(token)
+                ? visibleStatus
+                : HttpStatus.ACCEPTED;
+        return ResponseEntity.status(status)
+                .header(WriteVisibilityService.WRITE_TOKEN_HEADER, token)
+                .body(message);
+    }
+
+    private int changesPageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_CHANGES_PAGE_SIZE));
+    }
+
+    // subject: người gửi request theo RateLimitService.subjectOf, bị tính một token ghi cho mỗi phần tử
+    private BulkIngestService.BulkItem<Comment> prepareNewComment(CommentDto commentDto, String subject) {
+        if (commentDto == null || (commentDto.postId() == null && commentDto.parentId() == null)) {
+            throw new IllegalArgumentException("postId or parentId is required");
+        }
+        if (commentDto.author() == null) {
+            throw new IllegalArgumentException("author is required");
+        }
+        RateLimitService.Decision decision = rateLimitService.acquireWrite(subject);
+        if (!decision.allowed()) {
+            throw new IllegalArgumentException("Too many writes from " + subject
+                    + ", retry after " + decision.retryAfterSeconds() + "s");
+        }
+
+        User user = User.newBuilder()
+                .setFirstName(commentDto.author().firstName())
+                .setLastName(commentDto.author().lastName())
+                .setEmail(commentDto.author().email())
+                .setOccupation(commentDto.author().occupation())
+                .setGender(commentDto.author().gender())
+                .setDateOfBirth(commentDto.author().dateOfBirth())
+                .setAvatarUrl(commentDto.author().avatarUrl())
+                .build();
+
+        String commentId = UUID.randomUUID().toString();
+        long createdAt = commentDto.createdAt() != null && commentDto.createdAt() > 0
+                ? commentDto.createdAt()
+                : System.currentTimeMillis();
+        Comment comment = Comment.newBuilder()
+                .setId(commentId)
+                .setEventType(CommentEventType.CREATED)
+                .setPostId(commentDto.postId())
+                // Comment của bài post không có parentId, reply không có postId
+                .setParentId(commentDto.postId() != null ? null : commentDto.parentId())
+                .setAuthor(user)
+                .setContent(commentDto.content())
+                .setCreatedAt(createdAt)
+                .build();
+        return new BulkIngestService.BulkItem<>(commentId, comment);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.mediaservice.controller;
+
+import com.example.mediaservice.service.EventLogService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.Map;
+
+@RestController
+@PreAuthorize("hasRole('ADMIN')")
+@RequestMapping("/admin/event-log/debug")
+@AllArgsConstructor
+public class EventLogController {
+
+    private final EventLogService eventLogService;
+
+    /**
+     * Log every event of a Kafka key with its full payload on all instances, for a limited time
+     */
+    @PostMapping("/{key}")
+    public ResponseEntity<?> enableDebug(@PathVariable String key) {
+        try {
+            Instant expiresAt = eventLogService.enableDebug(key);
+            return ResponseEntity.ok(Map.of("key", key, "expiresAt", expiresAt));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to enable event debug logging: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the debug logging of a key
+     */
+    @DeleteMapping("/{key}")
+    public ResponseEntity<?> disableDebug(@PathVariable String key) {
+        try {
+            eventLogService.disableDebug(key);
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to disable event debug logging: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the keys currently logged with their payload on this instance
+     */
+    @GetMapping
+    public ResponseEntity<?> getDebugKeys() {
+        return ResponseEntity.ok(eventLogService.getDebugKeys());
+    }
+}
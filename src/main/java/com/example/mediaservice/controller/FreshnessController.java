@@ -0,0 +1,27 @@
+package com.example.mediaservice.controller;
+
+import com.example.mediaservice.service.FreshnessService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@PreAuthorize("hasRole('ADMIN')")
+@RequestMapping("/admin/freshness")
+@AllArgsConstructor
+public class FreshnessController {
+
+    private final FreshnessService freshnessService;
+
+    /**
+     * Get, per topic, how long the last event took from being accepted to being readable from Redis
+     * and how many records are still waiting to be consumed
+     */
+    @GetMapping
+    public ResponseEntity<?> getFreshness() {
+        return ResponseEntity.ok(freshnessService.getFreshness());
+    }
+}
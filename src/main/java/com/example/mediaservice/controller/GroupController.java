@@ -1,6 +1,7 @@
 package com.example.mediaservice.controller;
 
 import com.example.mediaservice.dto.GroupDto;
+import com.example.mediaservice.dto.PageDto;
 import com.example.mediaservice.entity.Group;
 import com.example.mediaservice.entity.relationship.UserChannel;
 import com.example.mediaservice.entity.relationship.UserGroup;
@@ -12,10 +13,13 @@ import com.example.mediaservice.service.ChannelRedisService;
 import com.example.mediaservice.service.GroupRedisService;
 import com.example.mediaservice.service.TokenService;
 import com.example.mediaservice.service.UserGroupRedisService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -33,6 +37,7 @@ public class GroupController {
     private final UserGroupRedisService userGroupRedisService;
     private final ChannelRedisService channelRedisService;
     private final TokenService tokenService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/join/{groupId}")
     public ResponseEntity<String> joinGroup(@PathVariable String groupId) {
@@ -45,7 +50,7 @@ public class GroupController {
             }
 
             // Check if user is already in the group
-            if (groupRedisService.isUserInGroup(userEmail, groupId)) {
+            if (userGroupRedisService.isGroupMember(groupId, userEmail)) {
                 return ResponseEntity.status(HttpStatus.CONFLICT)
                         .body("User is already a member of this group");
             }
@@ -61,9 +66,9 @@ public class GroupController {
             userGroupProducerService.sendUserGroupEvent(userGroup);
 
             // Find the default "general" channel for this group
-            Map<String, Object> defaultChannel = channelRedisService.getDefaultChannelForGroup(groupId);
+            Map<String, String> defaultChannel = channelRedisService.getDefaultChannelForGroup(groupId);
             if (defaultChannel != null && !defaultChannel.isEmpty()) {
-                String channelId = defaultChannel.get("channelId").toString();
+                String channelId = defaultChannel.get("channelId");
 
                 // Add user to the general channel
                 UserChannel userChannel = UserChannel.newBuilder()
@@ -132,21 +137,43 @@ public class GroupController {
         }
     }
 
+    /**
+     * Get users of a group. Without a cursor the whole set is returned (SMEMBERS); with a cursor
+     * ("0" for the first page) one SSCAN page is returned together with the next cursor.
+     */
     @GetMapping("/{groupId}/users")
-    public ResponseEntity<?> getGroupUsers(@PathVariable String groupId) {
+    public ResponseEntity<?> getGroupUsers(@PathVariable String groupId,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "500") int count) {
         try {
-            Set<Object> users = userGroupRedisService.getGroupUsers(groupId);
-            return ResponseEntity.ok(users);
+            if (cursor == null) {
+                Set<String> users = userGroupRedisService.getGroupUsers(groupId);
+                return ResponseEntity.ok(users);
+            }
+
+            PageDto<String> page = userGroupRedisService.scanGroupUsers(groupId, cursor, NdjsonStreams.pageSize(count));
+            return ResponseEntity.ok(page);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to retrieve group users from cache: " + e.getMessage());
         }
     }
 
+    /**
+     * Stream all users of a group as NDJSON (one JSON string per line), written page by page as SSCAN
+     * walks the set.
+     */
+    @GetMapping(value = "/{groupId}/users/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamGroupUsers(@PathVariable String groupId,
+                                                                  @RequestParam(defaultValue = "500") int count) {
+        return NdjsonStreams.stream(objectMapper,
+                pages -> userGroupRedisService.forEachGroupUsersPage(groupId, NdjsonStreams.pageSize(count), pages));
+    }
+
     @GetMapping("/relationship/{userId}/{groupId}")
     public ResponseEntity<?> getUserGroupRelationship(@PathVariable String userId, @PathVariable String groupId) {
         try {
-            Map<String, Object> relationship = userGroupRedisService.getUserGroup(userId, groupId);
+            Map<String, String> relationship = userGroupRedisService.getUserGroup(userId, groupId);
             if (relationship == null || relationship.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body("User-group relationship not found");
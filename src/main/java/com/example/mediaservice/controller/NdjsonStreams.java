@@ -0,0 +1,64 @@
+package com.example.mediaservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Phần dùng chung của các endpoint trả danh sách user của group/channel: giới hạn kích thước trang SSCAN
+ * và ghi NDJSON (mỗi dòng một chuỗi JSON) theo từng trang.
+ */
+final class NdjsonStreams {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private NdjsonStreams() {
+    }
+
+    /**
+     * Clamps a requested page size to 1..MAX_PAGE_SIZE.
+     */
+    static int pageSize(int count) {
+        return Math.max(1, Math.min(count, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Streams the pages produced by scan as NDJSON, flushing after each page.
+     *
+     * @param scan Calls its argument once per page.
+     */
+    static ResponseEntity<StreamingResponseBody> stream(ObjectMapper objectMapper,
+                                                        Consumer<Consumer<List<String>>> scan) {
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            scan.accept(values -> writeLines(objectMapper, writer, values));
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private static void writeLines(ObjectMapper objectMapper, Writer writer, List<String> values) {
+        try {
+            for (String value : values) {
+                writer.write(objectMapper.writeValueAsString(value));
+                writer.write('\n');
+            }
+            // Đẩy từng trang xuống client thay vì giữ cả danh sách trong buffer
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,46 +1,209 @@
 package com.example.mediaservice.controller;
 
+import com.example.mediaservice.dto.BatchResultDto;
+import com.example.mediaservice.dto.FeedChangesDto;
+import com.example.mediaservice.dto.PageDto;
 import com.example.mediaservice.dto.PostDto;
+import com.example.mediaservice.service.HomeFeedService;
 import com.example.mediaservice.service.PostRedisService;
+import com.example.mediaservice.service.TimelineRedisService;
+import com.example.mediaservice.service.TokenService;
+import com.example.mediaservice.service.WriteVisibilityService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+@Slf4j
 @AllArgsConstructor
 @RestController
 @RequestMapping("/post")
 class PostController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_CHANGES_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 500;
+
     private final PostRedisService postRedisService;
+    private final TimelineRedisService timelineRedisService;
+    private final HomeFeedService homeFeedService;
+    private final TokenService tokenService;
+    private final WriteVisibilityService writeVisibilityService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Get the current user's home timeline, newest first. Pass the returned nextCursor to get the next page.
+     */
+    @GetMapping("/timeline")
+    public ResponseEntity<?> getTimeline(@RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        try {
+            String userEmail = tokenService.getEmailFromToken();
+
+            if (userEmail == null || userEmail.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("Unable to extract email from token");
+            }
+
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            PageDto<PostDto> page = timelineRedisService.getTimeline(userEmail, cursor, pageSize);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to retrieve timeline: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the current user's home feed merged from the time index of all their groups at read time.
+     */
+    @GetMapping("/home")
+    public ResponseEntity<?> getHomeFeed(@RequestParam(required = false) String cursor,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        try {
+            String userEmail = tokenService.getEmailFromToken();
+
+            if (userEmail == null || userEmail.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("Unable to extract email from token");
+            }
+
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            PageDto<PostDto> page = homeFeedService.getHomeFeed(userEmail, cursor, pageSize);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to retrieve home feed: " + e.getMessage());
+        }
+    }
 
     /**
-     * Get all posts from a group
+     * Get all posts from a group as a JSON array streamed while the group is scanned.
+     * Answers 304 when If-None-Match matches the feed ETag (epoch and version).
      */
     @GetMapping("/group/{groupId}")
-    public ResponseEntity<?> getPostsByGroup(@PathVariable String groupId) {
+    public ResponseEntity<?> getPostsByGroup(@PathVariable String groupId, WebRequest request) {
         try {
-            List<PostDto> posts = postRedisService.getPostsByGroup(groupId);
-            return ResponseEntity.ok(posts);
+            // Chỉ đọc bộ đếm version, không đọc hash nếu client đã có bản mới nhất
+            if (request.checkNotModified(postRedisService.getGroupPostsETag(groupId))) {
+                return null;
+            }
+            return streamPosts(consumer -> postRedisService.forEachPostInGroup(groupId, consumer));
         } catch (Exception e) {
+            log.error("Error retrieving posts of group '{}': {}", groupId, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to retrieve posts: " + e.getMessage());
         }
     }
 
     /**
-     * Get all posts from a channel
+     * Get the posts of a group created, updated or deleted after since ("epoch-version", empty or 0 for
+     * everything still in the change log). Use the returned epoch and version as since for the next call; when
+     * the epoch changed (Redis flush) the answer has resyncRequired=true.
+     */
+    @GetMapping("/group/{groupId}/changes")
+    public ResponseEntity<?> getGroupPostChanges(@PathVariable String groupId,
+                                                 @RequestParam(defaultValue = "0") String since,
+                                                 @RequestParam(defaultValue = "500") int limit) {
+        try {
+            FeedChangesDto<PostDto> changes = postRedisService.getGroupPostChanges(groupId, since, changesPageSize(limit));
+            return ResponseEntity.ok(changes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to retrieve post changes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the posts of a channel changed after since ("epoch-version")
+     */
+    @GetMapping("/channel/{channelId}/changes")
+    public ResponseEntity<?> getChannelPostChanges(@PathVariable String channelId,
+                                                   @RequestParam(defaultValue = "0") String since,
+                                                   @RequestParam(defaultValue = "500") int limit) {
+        try {
+            FeedChangesDto<PostDto> changes = postRedisService.getChannelPostChanges(channelId, since, changesPageSize(limit));
+            return ResponseEntity.ok(changes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to retrieve post changes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get all posts from a channel as a streamed JSON array.
+     * Answers 304 when If-None-Match matches the feed ETag (epoch and version).
      */
     @GetMapping("/channel/{channelId}")
-    public ResponseEntity<?> getPostsByChannel(@PathVariable String channelId) {
+    public ResponseEntity<?> getPostsByChannel(@PathVariable String channelId, WebRequest request) {
+        try {
+            if (request.checkNotModified(postRedisService.getChannelPostsETag(channelId))) {
+                return null;
+            }
+            return streamPosts(consumer -> postRedisService.forEachPostInChannel(channelId, consumer));
+        } catch (Exception e) {
+            log.error("Error retrieving posts of channel '{}': {}", channelId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to retrieve posts: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get many posts in one request. The body maps each group ID to the post IDs to read from it,
+     * e.g. {"g1": ["p1", "p2"], "g2": ["p3"]}. Posts not found are listed in missing.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> getPostsByIds(@RequestBody Map<String, List<String>> postIdsByGroup) {
         try {
-            List<PostDto> posts = postRedisService.getPostsByChannel(channelId);
-            return ResponseEntity.ok(posts);
+            Map<String, List<String>> request = new LinkedHashMap<>();
+            Set<String> ids = new LinkedHashSet<>();
+            postIdsByGroup.forEach((groupId, postIds) -> {
+                List<String> distinct = postIds.stream().filter(ids::add).toList();
+                if (!distinct.isEmpty()) {
+                    request.put(groupId, distinct);
+                }
+            });
+            if (ids.size() > MAX_BATCH_SIZE) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("At most " + MAX_BATCH_SIZE + " posts can be requested at once");
+            }
+            Map<String, PostDto> posts = postRedisService.getPostsByIds(request);
+            return ResponseEntity.ok(BatchResultDto.of(ids, posts));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to retrieve posts: " + e.getMessage());
@@ -48,19 +211,57 @@ class PostController {
     }
 
     /**
-     * Get a specific post by ID
+     * Get a specific post by ID.
+     * With the X-Write-Token returned by a write, first waits briefly until that write is visible.
      */
     @GetMapping("/{groupId}/{postId}")
-    public ResponseEntity<?> getPostById(@PathVariable String groupId, @PathVariable String postId) {
+    public ResponseEntity<?> getPostById(@PathVariable String groupId, @PathVariable String postId,
+                                         @RequestHeader(value = WriteVisibilityService.WRITE_TOKEN_HEADER, required = false) String writeToken) {
         try {
+            if (writeToken != null) {
+                writeVisibilityService.awaitVisible(writeToken);
+            }
             PostDto post = postRedisService.getPostById(groupId, postId);
             if (post == null) {
                 return ResponseEntity.notFound().build();
             }
             return ResponseEntity.ok(post);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to retrieve post: " + e.getMessage());
         }
     }
+
+    // Ghi từng post ngay khi đọc được từ Redis, không giữ cả danh sách trong bộ nhớ.
+    // Status 200 đã được gửi trước khi scan, lỗi giữa chừng chỉ cắt ngang response.
+    private ResponseEntity<StreamingResponseBody> streamPosts(Consumer<Consumer<PostDto>> scan) {
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.createGenerator(outputStream);
+            generator.writeStartArray();
+            // HSCAN có thể trả một field nhiều lần nếu hash bị rehash trong lúc scan
+            Set<String> written = new HashSet<>();
+            scan.accept(post -> {
+                if (!written.add(post.id())) {
+                    return;
+                }
+                try {
+                    generator.writeObject(post);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+            generator.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private int changesPageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_CHANGES_PAGE_SIZE));
+    }
 }
@@ -1,18 +1,29 @@
 package com.example.mediaservice.controller;
 
+import com.example.mediaservice.dto.BulkResultDto;
 import com.example.mediaservice.dto.PostDto;
 import com.example.mediaservice.entity.Post;
 import com.example.mediaservice.entity.User;
 import com.example.mediaservice.producer.PostProducerService;
 
+import com.example.mediaservice.service.BulkIngestService;
+import com.example.mediaservice.service.GroupMembershipService;
+import com.example.mediaservice.service.RateLimitService;
 import com.example.mediaservice.service.TokenService;
+import com.example.mediaservice.service.WriteVisibilityService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @AllArgsConstructor
 @RestController
@@ -22,42 +33,40 @@ public class PostEventController {
 
     private final PostProducerService postProducerService;
     private final TokenService tokenService;
+    private final BulkIngestService bulkIngestService;
+    private final WriteVisibilityService writeVisibilityService;
+    private final RateLimitService rateLimitService;
+    private final GroupMembershipService groupMembershipService;
 
     /**
-     * Create a new post
+     * Create a new post.
+     * Answers 202 without waiting for Kafka. With writeToken=true, waits for Kafka to acknowledge the post and
+     * returns an X-Write-Token header that GET endpoints accept to wait until the post is visible.
+     * With waitForVisibility=true, answers 201 once the post is readable, or 202 if that took too long.
      */
     @PostMapping("/create")
-    public ResponseEntity<String> createPost(@RequestBody PostDto postDto) {
+    public ResponseEntity<String> createPost(@RequestBody PostDto postDto,
+                                             @RequestParam(defaultValue = "false") boolean writeToken,
+                                             @RequestParam(defaultValue = "false") boolean waitForVisibility) {
 
         try {
-            String postId ="post_" + UUID.randomUUID().toString();
-
+            ResponseEntity<String> forbidden = notGroupMember(postDto.groupId());
+            if (forbidden != null) {
+                return forbidden;
+            }
+            ResponseEntity<String> limited = groupRateLimited(postDto.groupId());
+            if (limited != null) {
+                return limited;
+            }
 
-            User user = User.newBuilder()
-                    .setFirstName(postDto.author().firstName())
-                    .setLastName(postDto.author().lastName())
-                    .setEmail(postDto.author().email())
-                    .setOccupation(postDto.author().occupation())
-                    .setGender(postDto.author().gender())
-                    .setDateOfBirth(postDto.author().dateOfBirth())
-                    .setAvatarUrl(postDto.author().avatarUrl())
-                    .build();
+            String postId ="post_" + UUID.randomUUID().toString();
 
             // Build Post entity
-            Post post = Post.newBuilder()
-                    .setId(postId)
-                    .setGroupId(postDto.groupId())
-                    .setChannelId(postDto.channelId())
-                    .setAuthor(user)
-                    .setContent(postDto.content())
-                    .setLikes(0)
-                    .build();
+            Post post = buildNewPost(postId, postDto, System.currentTimeMillis());
 
             // Send event to Kafka
-            postProducerService.sendPostCreated(post);
-
-            return ResponseEntity.accepted()
-                    .body("Post creation request accepted. Post ID: " + postId);
+            return writeAccepted(postProducerService.sendPostCreated(post), writeToken, waitForVisibility, HttpStatus.CREATED,
+                    "Post creation request accepted. Post ID: " + postId);
 
 //            log.info("Received post creation request:" + postDto);
 //            return ResponseEntity.accepted()
@@ -69,11 +78,51 @@ public class PostEventController {
     }
 
     /**
-     * Update an existing post
+     * Create many posts in one request, from a JSON array or an NDJSON stream of posts.
+     * Answers 202 when every post was accepted by Kafka, 207 with the status of each post otherwise.
+     * A createdAt set on a post is kept (history import), otherwise the current time is used.
+     * Each post is charged to the caller's write limit (JWT user, else client IP) and its group's limit;
+     * posts over a limit are rejected.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> createPosts(InputStream body, HttpServletRequest request) {
+        try {
+            if (groupMembershipService.isCheckOnWrite() && tokenService.findEmail() == null) {
+                return unauthenticated();
+            }
+            String subject = RateLimitService.subjectOf(tokenService.findEmail(), request.getRemoteAddr());
+            BulkResultDto result = bulkIngestService.ingest(body, PostDto.class,
+                    postDto -> prepareNewPost(postDto, subject), postProducerService::sendPostCreated);
+
+            HttpStatus status = result.error() == null && result.accepted() == result.items().size()
+                    ? HttpStatus.ACCEPTED
+                    : HttpStatus.MULTI_STATUS;
+            return ResponseEntity.status(status).body(result);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to process bulk post creation request: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Update an existing post.
+     * Like create, returns an X-Write-Token with writeToken=true and answers 200 instead of 202 with
+     * waitForVisibility=true.
      */
     @PutMapping("/update/{postId}")
-    public ResponseEntity<String> updatePost(@PathVariable String postId, @RequestBody PostDto postDto) {
+    public ResponseEntity<String> updatePost(@PathVariable String postId, @RequestBody PostDto postDto,
+                                             @RequestParam(defaultValue = "false") boolean writeToken,
+                                             @RequestParam(defaultValue = "false") boolean waitForVisibility) {
         try {
+            ResponseEntity<String> forbidden = notGroupMember(postDto.groupId());
+            if (forbidden != null) {
+                return forbidden;
+            }
+            ResponseEntity<String> limited = groupRateLimited(postDto.groupId());
+            if (limited != null) {
+                return limited;
+            }
+
             // Build Post entity
             User user = User.newBuilder()
                     .setFirstName(postDto.author().firstName())
@@ -92,13 +141,12 @@ public class PostEventController {
                     .setAuthor(user)
                     .setContent(postDto.content())
                     .setLikes(postDto.likes())
+                    .setCreatedAt(postDto.createdAt())
                     .build();
 
             // Send event to Kafka
-            postProducerService.sendPostUpdated(post);
-
-            return ResponseEntity.accepted()
-                    .body("Post update request accepted. Post ID: " + postId);
+            return writeAccepted(postProducerService.sendPostUpdated(post), writeToken, waitForVisibility, HttpStatus.OK,
+                    "Post update request accepted. Post ID: " + postId);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Failed to process post update request: " + e.getMessage());
@@ -111,11 +159,22 @@ public class PostEventController {
     @DeleteMapping("/delete/{postId}")
     public ResponseEntity<String> deletePost(
             @PathVariable String postId,
+            @RequestParam String groupId,
             @RequestParam(required = false) String channelId) {
         try {
-            // Build minimal Post entity for deletion
+            ResponseEntity<String> forbidden = notGroupMember(groupId);
+            if (forbidden != null) {
+                return forbidden;
+            }
+            ResponseEntity<String> limited = groupRateLimited(groupId);
+            if (limited != null) {
+                return limited;
+            }
+
+            // Build minimal Post entity for deletion (groupId là field bắt buộc của schema Post)
             Post post = Post.newBuilder()
                     .setId(postId)
+                    .setGroupId(groupId)
                     .setChannelId(channelId)
                     .setAuthor(null)
                     .setContent("")
@@ -133,5 +192,112 @@ public class PostEventController {
         }
     }
 
+    // Mặc định trả 202 ngay mà không chờ Kafka xác nhận. writeToken=true chờ Kafka xác nhận để trả write token
+    // trong header X-Write-Token; waitForVisibility=true chờ thêm tới khi consumer ghi Redis xong, trả
+    // visibleStatus nếu kịp, 202 nếu hết media.visibility.max-wait
+    private ResponseEntity<String> writeAccepted(CompletableFuture<? extends SendResult<?, ?>> send, boolean writeToken,
+                                                 boolean waitForVisibility, HttpStatus visibleStatus, String message) {
+        if (!writeToken && !waitForVisibility) {
+            send.whenComplete((result, e) -> {
+                if (e != null) {
+                    log.error("Kafka did not accept event: {}", e.getMessage(), e);
+                }
+            });
+            return ResponseEntity.accepted().body(message);
+        }
+        String token = writeVisibilityService.awaitToken(send);
+        HttpStatus status = waitForVisibility && writeVisibilityService.awaitVisible(token)
+                ? visibleStatus
+                : HttpStatus.ACCEPTED;
+        return ResponseEntity.status(status)
+                .header(WriteVisibilityService.WRITE_TOKEN_HEADER, token)
+                .body(message);
+    }
+
+    // 401 khi check-on-write bật mà request không có JWT, 403 khi user của JWT không phải thành viên group,
+    // null nếu được ghi. Người ghi chỉ lấy từ JWT, không bao giờ từ author trong body
+    private ResponseEntity<String> notGroupMember(String groupId) {
+        if (groupId == null || !groupMembershipService.isCheckOnWrite()) {
+            return null;
+        }
+        String writer = tokenService.findEmail();
+        if (writer == null) {
+            return unauthenticated();
+        }
+        if (groupMembershipService.isMember(groupId, writer)) {
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body("User " + writer + " is not a member of group " + groupId);
+    }
+
+    private ResponseEntity<String> unauthenticated() {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body("A bearer token is required to write posts");
+    }
+
+    // 429 khi group đã nhận quá nhiều lần ghi post, null nếu còn được ghi
+    private ResponseEntity<String> groupRateLimited(String groupId) {
+        if (groupId == null) {
+            return null;
+        }
+        RateLimitService.Decision decision = rateLimitService.acquireGroupWrite(groupId);
+        if (decision.allowed()) {
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()))
+                .body("Too many posts written to group " + groupId + ", retry later");
+    }
+
+    // subject: người gửi request theo RateLimitService.subjectOf, bị tính một token ghi cho mỗi phần tử
+    private BulkIngestService.BulkItem<Post> prepareNewPost(PostDto postDto, String subject) {
+        if (postDto == null || postDto.groupId() == null) {
+            throw new IllegalArgumentException("groupId is required");
+        }
+        if (postDto.author() == null) {
+            throw new IllegalArgumentException("author is required");
+        }
+        // createPosts đã trả 401 nếu check-on-write bật mà không có JWT
+        String writer = tokenService.findEmail();
+        if (writer != null && !groupMembershipService.canWrite(postDto.groupId(), writer)) {
+            throw new IllegalArgumentException("User " + writer + " is not a member of group " + postDto.groupId());
+        }
+        // Mỗi phần tử tính như một lần ghi: một token của người gửi và một token của group
+        RateLimitService.Decision userDecision = rateLimitService.acquireWrite(subject);
+        if (!userDecision.allowed()) {
+            throw new IllegalArgumentException("Too many writes from " + subject
+                    + ", retry after " + userDecision.retryAfterSeconds() + "s");
+        }
+        RateLimitService.Decision groupDecision = rateLimitService.acquireGroupWrite(postDto.groupId());
+        if (!groupDecision.allowed()) {
+            throw new IllegalArgumentException("Too many posts written to group " + postDto.groupId()
+                    + ", retry after " + groupDecision.retryAfterSeconds() + "s");
+        }
+        String postId = "post_" + UUID.randomUUID();
+        long createdAt = postDto.createdAt() > 0 ? postDto.createdAt() : System.currentTimeMillis();
+        return new BulkIngestService.BulkItem<>(postId, buildNewPost(postId, postDto, createdAt));
+    }
+
+    private Post buildNewPost(String postId, PostDto postDto, long createdAt) {
+        User user = User.newBuilder()
+                .setFirstName(postDto.author().firstName())
+                .setLastName(postDto.author().lastName())
+                .setEmail(postDto.author().email())
+                .setOccupation(postDto.author().occupation())
+                .setGender(postDto.author().gender())
+                .setDateOfBirth(postDto.author().dateOfBirth())
+                .setAvatarUrl(postDto.author().avatarUrl())
+                .build();
 
-}
\ No newline at end of file
+        return Post.newBuilder()
+                .setId(postId)
+                .setGroupId(postDto.groupId())
+                .setChannelId(postDto.channelId())
+                .setAuthor(user)
+                .setContent(postDto.content())
+                .setLikes(0)
+                .setCreatedAt(createdAt)
+                .build();
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.mediaservice.controller;
+
+import com.example.mediaservice.service.PushService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/push")
+@RequiredArgsConstructor
+public class PushController {
+
+    private final PushService pushService;
+
+    @Value("${media.push.max-topics:200}")
+    private int maxTopics;
+
+    /**
+     * Subscribe to live updates over SSE instead of polling.
+     * Events: post-created/updated/deleted for groups and channels, comment-created/updated/deleted for
+     * posts (comments) and comments (replies).
+     */
+    @GetMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam(required = false) List<String> groups,
+                                @RequestParam(required = false) List<String> channels,
+                                @RequestParam(required = false) List<String> posts,
+                                @RequestParam(required = false) List<String> comments) {
+        Set<String> topics = new LinkedHashSet<>();
+        addTopics(topics, PushService.GROUP_TOPIC_PREFIX, groups);
+        addTopics(topics, PushService.CHANNEL_TOPIC_PREFIX, channels);
+        addTopics(topics, PushService.POST_TOPIC_PREFIX, posts);
+        addTopics(topics, PushService.COMMENT_TOPIC_PREFIX, comments);
+
+        if (topics.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one group, channel, post or comment is required");
+        }
+        if (topics.size() > maxTopics) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many topics, maximum is " + maxTopics);
+        }
+
+        return pushService.subscribe(topics);
+    }
+
+    private void addTopics(Set<String> topics, String prefix, List<String> ids) {
+        if (ids != null) {
+            ids.stream()
+                    .filter(id -> !id.isBlank())
+                    .forEach(id -> topics.add(prefix + id));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.mediaservice.controller;
+
+import com.example.mediaservice.service.ReadModelRebuildService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@PreAuthorize("hasRole('ADMIN')")
+@RequestMapping("/admin/rebuild")
+@AllArgsConstructor
+public class RebuildController {
+
+    private final ReadModelRebuildService readModelRebuildService;
+
+    /**
+     * Start rebuilding the Redis read models from the Kafka topics. Poll GET /admin/rebuild for progress.
+     * With snapshot=true posts and comments are loaded from the compacted state topics instead of
+     * their whole event history.
+     */
+    @PostMapping
+    public ResponseEntity<?> startRebuild(@RequestParam(defaultValue = "false") boolean snapshot) {
+        try {
+            boolean started = snapshot ? readModelRebuildService.startHydration() : readModelRebuildService.start();
+            if (!started) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(readModelRebuildService.getStatus());
+            }
+            return ResponseEntity.accepted().body(readModelRebuildService.getStatus());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to start rebuild: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the progress and throughput of the running or last rebuild
+     */
+    @GetMapping
+    public ResponseEntity<?> getRebuildStatus() {
+        return ResponseEntity.ok(readModelRebuildService.getStatus());
+    }
+}
@@ -1,20 +1,29 @@
 package com.example.mediaservice.controller;
 
+import com.example.mediaservice.dto.BatchResultDto;
 import com.example.mediaservice.service.TokenService;
 import com.example.mediaservice.service.UserRedisService;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/users")
 @AllArgsConstructor
 public class UserController {
+
+    private static final int MAX_BATCH_SIZE = 500;
+
     private final UserRedisService userRedisService;
     private final TokenService tokenService;
 
@@ -28,7 +37,7 @@ public class UserController {
                         .body("Unable to extract email from token");
             }
 
-            Map<String, Object> user = userRedisService.getUser(email);
+            Map<String, String> user = userRedisService.getUser(email);
             if (user == null || user.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body("User not found in cache");
@@ -40,5 +49,21 @@ public class UserController {
         }
     }
 
-
+    /**
+     * Get many users by email in one request. Emails not in the cache are listed in missing.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> getUsers(@RequestBody List<String> emails) {
+        try {
+            Set<String> ids = new LinkedHashSet<>(emails);
+            if (ids.size() > MAX_BATCH_SIZE) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body("At most " + MAX_BATCH_SIZE + " users can be requested at once");
+            }
+            return ResponseEntity.ok(BatchResultDto.of(ids, userRedisService.getUsers(ids)));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to retrieve users from cache");
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package com.example.mediaservice.dto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kết quả đọc theo lô, một phần id có thể không tồn tại
+ * @param found   các phần tử tìm thấy, theo id
+ * @param missing id không tìm thấy
+ */
+public record BatchResultDto<T>(
+        Map<String, T> found,
+        List<String> missing
+) {
+
+    public static <T> BatchResultDto<T> of(Collection<String> ids, Map<String, T> found) {
+        List<String> missing = ids.stream()
+                .filter(id -> !found.containsKey(id))
+                .toList();
+        return new BatchResultDto<>(found, missing);
+    }
+}
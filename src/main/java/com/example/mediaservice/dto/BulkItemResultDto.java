@@ -0,0 +1,16 @@
+package com.example.mediaservice.dto;
+
+/**
+ * Kết quả của một phần tử trong request ghi hàng loạt
+ * @param index  vị trí của phần tử trong request, bắt đầu từ 0
+ * @param id     id được cấp cho phần tử, null nếu bị từ chối
+ * @param status accepted, rejected hoặc failed
+ * @param error  lý do khi không được accept
+ */
+public record BulkItemResultDto(
+        int index,
+        String id,
+        String status,
+        String error
+) {
+}
@@ -0,0 +1,20 @@
+package com.example.mediaservice.dto;
+
+import java.util.List;
+
+/**
+ * Kết quả của một request ghi hàng loạt
+ * @param accepted số phần tử đã được Kafka xác nhận
+ * @param rejected số phần tử không hợp lệ
+ * @param failed   số phần tử gửi Kafka thất bại
+ * @param items    kết quả từng phần tử theo thứ tự trong request
+ * @param error    lỗi khiến phần còn lại của request không được đọc (JSON hỏng, quá giới hạn), null nếu không có
+ */
+public record BulkResultDto(
+        int accepted,
+        int rejected,
+        int failed,
+        List<BulkItemResultDto> items,
+        String error
+) {
+}
@@ -0,0 +1,22 @@
+package com.example.mediaservice.dto;
+
+import java.util.List;
+
+/**
+ * Các thay đổi của một feed kể từ version client đang có
+ * @param epoch          epoch của feed, đổi khi counter version bị tạo lại (Redis flush)
+ * @param version        version mới nhất đã bao gồm; lần sau gọi với since = epoch-version
+ * @param changed        các phần tử được tạo hoặc sửa
+ * @param deleted        id các phần tử đã bị xóa
+ * @param hasMore        còn thay đổi chưa trả về, gọi tiếp với since = epoch-version
+ * @param resyncRequired change log không còn đủ để tính từ since hoặc epoch đã đổi, client phải tải lại toàn bộ feed
+ */
+public record FeedChangesDto<T>(
+        String epoch,
+        long version,
+        List<T> changed,
+        List<String> deleted,
+        boolean hasMore,
+        boolean resyncRequired
+) {
+}
@@ -0,0 +1,14 @@
+package com.example.mediaservice.dto;
+
+/**
+ * Thay đổi được đẩy tới client đang subscribe
+ * @param type  loại sự kiện, vd. post-created, comment-deleted
+ * @param topic topic mà client subscribe: group:{id}, channel:{id}, post:{id} (comment của post), comment:{id} (reply)
+ * @param data  post/comment mới, hoặc chỉ id khi bị xóa
+ */
+public record FeedEventDto(
+        String type,
+        String topic,
+        Object data
+) {
+}
@@ -0,0 +1,14 @@
+package com.example.mediaservice.dto;
+
+import java.util.List;
+
+/**
+ * Một trang kết quả theo cursor
+ * @param items      các phần tử của trang
+ * @param nextCursor cursor để lấy trang tiếp theo, null nếu đã hết
+ */
+public record PageDto<T>(
+        List<T> items,
+        String nextCursor
+) {
+}
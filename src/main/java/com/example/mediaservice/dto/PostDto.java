@@ -6,5 +6,6 @@ public record PostDto(
         String channelId,
         UserDto author,
         String content,
-        int likes
+        int likes,
+        long createdAt
 ) {}
\ No newline at end of file
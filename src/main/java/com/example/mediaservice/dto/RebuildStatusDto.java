@@ -0,0 +1,30 @@
+package com.example.mediaservice.dto;
+
+import java.time.Instant;
+
+/**
+ * Tiến độ của lần rebuild read model gần nhất
+ * @param state            IDLE, RUNNING, COMPLETED hoặc FAILED
+ * @param mode             replay (toàn bộ lịch sử event) hoặc snapshot (các topic compacted *-state)
+ * @param phase            các topic đang được replay
+ * @param startedAt        thời điểm bắt đầu, null nếu chưa chạy lần nào
+ * @param finishedAt       thời điểm kết thúc, null nếu đang chạy
+ * @param recordsApplied   số record đã ghi vào Redis
+ * @param recordsFailed    số record lỗi (không đọc hoặc không ghi được)
+ * @param recordsRemaining số record còn lại của phase hiện tại
+ * @param recordsPerSecond tốc độ trung bình từ lúc bắt đầu
+ * @param error            lỗi khiến rebuild dừng
+ */
+public record RebuildStatusDto(
+        String state,
+        String mode,
+        String phase,
+        Instant startedAt,
+        Instant finishedAt,
+        long recordsApplied,
+        long recordsFailed,
+        long recordsRemaining,
+        double recordsPerSecond,
+        String error
+) {
+}
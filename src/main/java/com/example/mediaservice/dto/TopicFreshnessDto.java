@@ -0,0 +1,22 @@
+package com.example.mediaservice.dto;
+
+import java.time.Instant;
+
+/**
+ * Độ tươi của read model theo topic, tính trên instance trả lời
+ * @param topic              topic Kafka
+ * @param lastAcceptedAt     thời điểm API nhận event gần nhất đã được ghi vào Redis
+ * @param lastAppliedAt      thời điểm event đó được ghi vào Redis
+ * @param lastLatencyMs      độ trễ từ lúc nhận tới lúc ghi của event đó
+ * @param sinceLastAppliedMs thời gian từ lần ghi gần nhất tới hiện tại
+ * @param lag                tổng số record chưa xử lý của topic theo các consumer group được theo dõi, -1 nếu chưa biết
+ */
+public record TopicFreshnessDto(
+        String topic,
+        Instant lastAcceptedAt,
+        Instant lastAppliedAt,
+        long lastLatencyMs,
+        long sinceLastAppliedMs,
+        long lag
+) {
+}
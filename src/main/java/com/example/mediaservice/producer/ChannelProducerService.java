@@ -1,6 +1,7 @@
 package com.example.mediaservice.producer;
 
 import com.example.mediaservice.entity.Channel;
+import com.example.mediaservice.service.EventLogService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -12,12 +13,13 @@ import org.springframework.stereotype.Service;
 public class ChannelProducerService {
 
     private final KafkaTemplate<String, Channel> channelTemplate;
+    private final EventLogService eventLogService;
 
     public void sendChannelCreated(Channel channel) {
         try {
             String key = String.valueOf(channel.getChannelId());
             channelTemplate.send("channel-created", key, channel);
-            log.info("Sent channel-created event with key: {} and channel: {}", key, channel);
+            eventLogService.sent("channel-created", key, channel);
         } catch (Exception e) {
             log.error("Error sending channel-created event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send channel-created event", e);
@@ -28,7 +30,7 @@ public class ChannelProducerService {
         try {
             String key = String.valueOf(channel.getChannelId());
             channelTemplate.send("channel-updated", key, channel);
-            log.info("Sent channel-updated event with key: {} and channel: {}", key, channel);
+            eventLogService.sent("channel-updated", key, channel);
         } catch (Exception e) {
             log.error("Error sending channel-updated event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send channel-updated event", e);
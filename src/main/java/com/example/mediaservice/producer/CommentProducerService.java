@@ -1,34 +1,51 @@
 package com.example.mediaservice.producer;
 
 import com.example.mediaservice.entity.Comment;
+import com.example.mediaservice.service.EventLogService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @AllArgsConstructor
 @Slf4j
 public class CommentProducerService {
 
     private final KafkaTemplate<String, Comment> commentTemplate;
+    private final EventLogService eventLogService;
 
-    public void sendCommentCreated(Comment comment) {
+    /**
+     * Sends a comment-created event without waiting for the broker.
+     *
+     * @return Completes when the broker acknowledged the record.
+     */
+    public CompletableFuture<SendResult<String, Comment>> sendCommentCreated(Comment comment) {
         try {
             String key = String.valueOf(comment.getId());
-            commentTemplate.send("comment-created", key, comment);
-            log.info("Sent comment-created event with key: {} and comment: {}", key, comment);
+            CompletableFuture<SendResult<String, Comment>> result = commentTemplate.send(EventHeaders.accepted("comment-created", key, comment));
+            eventLogService.sent("comment-created", key, comment);
+            return result;
         } catch (Exception e) {
             log.error("Error sending comment-created event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send comment-created event", e);
         }
     }
 
-    public void sendCommentUpdated(Comment comment) {
+    /**
+     * Sends a comment-updated event without waiting for the broker.
+     *
+     * @return Completes when the broker acknowledged the record.
+     */
+    public CompletableFuture<SendResult<String, Comment>> sendCommentUpdated(Comment comment) {
         try {
             String key = String.valueOf(comment.getId());
-            commentTemplate.send("comment-updated", key, comment);
-            log.info("Sent comment-updated event with key: {} and comment: {}", key, comment);
+            CompletableFuture<SendResult<String, Comment>> result = commentTemplate.send(EventHeaders.accepted("comment-updated", key, comment));
+            eventLogService.sent("comment-updated", key, comment);
+            return result;
         } catch (Exception e) {
             log.error("Error sending comment-updated event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send comment-updated event", e);
@@ -38,8 +55,8 @@ public class CommentProducerService {
     public void sendCommentDeleted(Comment comment) {
         try {
             String key = String.valueOf(comment.getId());
-            commentTemplate.send("comment-deleted", key, comment);
-            log.info("Sent comment-deleted event with key: {} and comment: {}", key, comment);
+            commentTemplate.send(EventHeaders.accepted("comment-deleted", key, comment));
+            eventLogService.sent("comment-deleted", key, comment);
         } catch (Exception e) {
             log.error("Error sending comment-deleted event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send comment-deleted event", e);
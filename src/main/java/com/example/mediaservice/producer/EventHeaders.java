@@ -0,0 +1,45 @@
+package com.example.mediaservice.producer;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Header Kafka gắn vào các event do API nhận
+ */
+public final class EventHeaders {
+
+    /**
+     * Thời điểm (epoch millis) API nhận request sinh ra event, dùng để đo độ trễ tới khi ghi xong Redis
+     */
+    public static final String ACCEPTED_AT = "x-accepted-at";
+
+    private EventHeaders() {
+    }
+
+    /**
+     * Tạo record kèm header x-accepted-at là thời điểm hiện tại
+     */
+    public static <V> ProducerRecord<String, V> accepted(String topic, String key, V value) {
+        ProducerRecord<String, V> record = new ProducerRecord<>(topic, key, value);
+        record.headers().add(ACCEPTED_AT, String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    /**
+     * Đọc header x-accepted-at, null nếu không có hoặc không hợp lệ
+     */
+    public static Long acceptedAt(Headers headers) {
+        Header header = headers.lastHeader(ACCEPTED_AT);
+        if (header == null || header.value() == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
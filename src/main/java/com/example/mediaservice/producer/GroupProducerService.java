@@ -1,6 +1,7 @@
 package com.example.mediaservice.producer;
 
 import com.example.mediaservice.entity.Group;
+import com.example.mediaservice.service.EventLogService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -12,12 +13,13 @@ import org.springframework.stereotype.Service;
 public class GroupProducerService {
 
     private final KafkaTemplate<String, Group> groupTemplate;
+    private final EventLogService eventLogService;
 
     public void sendGroupCreated(Group group) {
         try {
             String key = String.valueOf(group.getId());
             groupTemplate.send("group-created", key, group);
-            log.info("Sent group-created event with key: {} and group: {}", key, group);
+            eventLogService.sent("group-created", key, group);
         } catch (Exception e) {
             log.error("Error sending group-created event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send group-created event", e);
@@ -28,7 +30,7 @@ public class GroupProducerService {
         try {
             String key = String.valueOf(group.getId());
             groupTemplate.send("group-updated", key, group);
-            log.info("Sent group-updated event with key: {} and group: {}", key, group);
+            eventLogService.sent("group-updated", key, group);
         } catch (Exception e) {
             log.error("Error sending group-updated event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send group-updated event", e);
@@ -1,10 +1,12 @@
 package com.example.mediaservice.producer;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+@Slf4j
 @Service
 public class KafkaProducerService {
     /**
@@ -14,9 +16,8 @@ public class KafkaProducerService {
     @Bean
     public ApplicationRunner runner(KafkaTemplate<String, String> kafkaTemplate) {
         return args -> {
-            System.out.println(">>> Gửi tin nhắn test...");
-            // use the args so static analysis does not flag it as unused
-            System.out.println("Application started with " + (args != null ? args.getSourceArgs().length : 0) + " source args");
+            log.debug("Sending test message to team-events, application started with {} source args",
+                    args != null ? args.getSourceArgs().length : 0);
             kafkaTemplate.send("team-events", "Xin chào từ Spring Boot Kafka (đã tách file)!");
         };
     }
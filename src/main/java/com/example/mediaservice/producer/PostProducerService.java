@@ -1,34 +1,51 @@
 package com.example.mediaservice.producer;
 
 import com.example.mediaservice.entity.Post;
+import com.example.mediaservice.service.EventLogService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Slf4j
 @AllArgsConstructor
 @Service
 public class PostProducerService {
 
     private final KafkaTemplate<String, Post> postTemplate;
+    private final EventLogService eventLogService;
 
-    public void sendPostCreated(Post post) {
+    /**
+     * Sends a post-created event without waiting for the broker.
+     *
+     * @return Completes when the broker acknowledged the record.
+     */
+    public CompletableFuture<SendResult<String, Post>> sendPostCreated(Post post) {
         try {
             String key = String.valueOf(post.getId());
-            postTemplate.send("post-created", key, post);
-            log.info("Sent post-created event with key: {} and post: {}", key, post);
+            CompletableFuture<SendResult<String, Post>> result = postTemplate.send(EventHeaders.accepted("post-created", key, post));
+            eventLogService.sent("post-created", key, post);
+            return result;
         } catch (Exception e) {
             log.error("Error sending post-created event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send post-created event", e);
         }
     }
 
-    public void sendPostUpdated(Post post) {
+    /**
+     * Sends a post-updated event without waiting for the broker.
+     *
+     * @return Completes when the broker acknowledged the record.
+     */
+    public CompletableFuture<SendResult<String, Post>> sendPostUpdated(Post post) {
         try {
             String key = String.valueOf(post.getId());
-            postTemplate.send("post-updated", key, post);
-            log.info("Sent post-updated event with key: {} and post: {}", key, post);
+            CompletableFuture<SendResult<String, Post>> result = postTemplate.send(EventHeaders.accepted("post-updated", key, post));
+            eventLogService.sent("post-updated", key, post);
+            return result;
         } catch (Exception e) {
             log.error("Error sending post-updated event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send post-updated event", e);
@@ -38,8 +55,8 @@ public class PostProducerService {
     public void sendPostDeleted(Post post) {
         try {
             String key = String.valueOf(post.getId());
-            postTemplate.send("post-deleted", key, post);
-            log.info("Sent post-deleted event with key: {} and post: {}", key, post);
+            postTemplate.send(EventHeaders.accepted("post-deleted", key, post));
+            eventLogService.sent("post-deleted", key, post);
         } catch (Exception e) {
             log.error("Error sending post-deleted event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send post-deleted event", e);
@@ -0,0 +1,137 @@
+package com.example.mediaservice.producer;
+
+import com.example.mediaservice.entity.Comment;
+import com.example.mediaservice.entity.Post;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ghi trạng thái mới nhất của post/comment vào các topic compacted post-state và comment-state.
+ * <p>
+ * Key là đường dẫn tới entity trong read model (post: groupId/postId, comment: post/postId/id hoặc
+ * comment/parentId/id) nên tombstone khi xóa vẫn đủ để xóa khỏi Redis. Sau compaction mỗi entity còn
+ * một record, nên nạp lại Redis từ các topic này chỉ tốn thời gian theo số entity đang tồn tại.
+ */
+@Slf4j
+@AllArgsConstructor
+@Service
+public class StateProducerService {
+
+    public static final String POST_STATE_TOPIC = "post-state";
+    public static final String COMMENT_STATE_TOPIC = "comment-state";
+    // Có record khi một replay đầy đủ đã ghi post-state/comment-state cho mọi entity
+    public static final String STATE_SEEDED_TOPIC = "state-seeded";
+
+    private static final String KEY_SEPARATOR = "/";
+    private static final String POST_COMMENT_KEY_PREFIX = "post";
+    private static final String REPLY_KEY_PREFIX = "comment";
+
+    private final KafkaTemplate<String, Post> postTemplate;
+    private final KafkaTemplate<String, Comment> commentTemplate;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+
+    /**
+     * Key của một post trong post-state
+     */
+    public static String getPostStateKey(Object groupId, Object postId) {
+        return groupId + KEY_SEPARATOR + postId;
+    }
+
+    /**
+     * Key của một comment trong comment-state
+     */
+    public static String getCommentStateKey(Comment comment) {
+        return comment.getPostId() != null
+                ? POST_COMMENT_KEY_PREFIX + KEY_SEPARATOR + comment.getPostId() + KEY_SEPARATOR + comment.getId()
+                : REPLY_KEY_PREFIX + KEY_SEPARATOR + comment.getParentId() + KEY_SEPARATOR + comment.getId();
+    }
+
+    /**
+     * Tách key của post-state thành [groupId, postId]
+     */
+    public static String[] parsePostStateKey(String key) {
+        int separator = key.lastIndexOf(KEY_SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid post state key: " + key);
+        }
+        return new String[]{key.substring(0, separator), key.substring(separator + 1)};
+    }
+
+    /**
+     * Dựng lại comment tối thiểu (id, postId hoặc parentId) từ key của một tombstone trong comment-state
+     */
+    public static Comment parseCommentStateKey(String key) {
+        String[] parts = key.split(KEY_SEPARATOR, 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid comment state key: " + key);
+        }
+        boolean forPost = POST_COMMENT_KEY_PREFIX.equals(parts[0]);
+        return Comment.newBuilder()
+                .setId(parts[2])
+                .setPostId(forPost ? parts[1] : null)
+                .setParentId(forPost ? null : parts[1])
+                .setAuthor(null)
+                .setContent("")
+                .setCreatedAt(0L)
+                .build();
+    }
+
+    public void sendPostState(Post post) {
+        try {
+            postTemplate.send(POST_STATE_TOPIC, getPostStateKey(post.getGroupId(), post.getId()), post);
+        } catch (Exception e) {
+            log.error("Error sending post state for post {}: {}", post.getId(), e.getMessage(), e);
+            throw new RuntimeException("Failed to send post state", e);
+        }
+    }
+
+    public void sendPostTombstone(Post post) {
+        try {
+            postTemplate.send(POST_STATE_TOPIC, getPostStateKey(post.getGroupId(), post.getId()), null);
+        } catch (Exception e) {
+            log.error("Error sending post state tombstone for post {}: {}", post.getId(), e.getMessage(), e);
+            throw new RuntimeException("Failed to send post state tombstone", e);
+        }
+    }
+
+    public void sendCommentState(Comment comment) {
+        try {
+            commentTemplate.send(COMMENT_STATE_TOPIC, getCommentStateKey(comment), comment);
+        } catch (Exception e) {
+            log.error("Error sending comment state for comment {}: {}", comment.getId(), e.getMessage(), e);
+            throw new RuntimeException("Failed to send comment state", e);
+        }
+    }
+
+    public void sendCommentTombstone(Comment comment) {
+        try {
+            commentTemplate.send(COMMENT_STATE_TOPIC, getCommentStateKey(comment), null);
+        } catch (Exception e) {
+            log.error("Error sending comment state tombstone for comment {}: {}", comment.getId(), e.getMessage(), e);
+            throw new RuntimeException("Failed to send comment state tombstone", e);
+        }
+    }
+
+    /**
+     * Records that the state topics hold every entity, once the records sent before are acknowledged.
+     * Call it after a full replay; hydration from the state topics is only used once this was recorded.
+     */
+    public void sendStateSeeded() {
+        try {
+            postTemplate.flush();
+            commentTemplate.flush();
+            kafkaTemplate.send(STATE_SEEDED_TOPIC, "seeded", Instant.now().toString()).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sending state seeded marker", e);
+        } catch (Exception e) {
+            log.error("Error sending state seeded marker: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to send state seeded marker", e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.mediaservice.producer;
 
 import com.example.mediaservice.entity.relationship.UserChannel;
+import com.example.mediaservice.service.EventLogService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -12,12 +13,13 @@ import org.springframework.stereotype.Service;
 public class UserChannelProducerService {
 
     private final KafkaTemplate<String, UserChannel> userChannelTemplate;
+    private final EventLogService eventLogService;
 
     public void sendUserChannelEvent(UserChannel userChannel) {
         try {
             String key = userChannel.getUserId() + ":" + userChannel.getChannelId();
             userChannelTemplate.send("user-channel-events", key, userChannel);
-            log.info("Sent user-channel event with key: {} and userChannel: {}", key, userChannel);
+            eventLogService.sent("user-channel-events", key, userChannel);
         } catch (Exception e) {
             log.error("Error sending user-channel event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send user-channel event", e);
@@ -1,6 +1,7 @@
 package com.example.mediaservice.producer;
 
 import com.example.mediaservice.entity.relationship.UserGroup;
+import com.example.mediaservice.service.EventLogService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Service;
 public class UserGroupProducerService {
 
     private final KafkaTemplate<String, UserGroup> userGroupTemplate;
+    private final EventLogService eventLogService;
 
     public void sendUserGroupEvent(UserGroup userGroup) {
         try {
@@ -21,7 +23,7 @@ public class UserGroupProducerService {
                     : "user-group-join";
 
             userGroupTemplate.send(topic, key, userGroup);
-            log.info("Sent {} event with key: {} and userGroup: {}", topic, key, userGroup);
+            eventLogService.sent(topic, key, userGroup);
         } catch (Exception e) {
             log.error("Error sending user-group event: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to send user-group event", e);
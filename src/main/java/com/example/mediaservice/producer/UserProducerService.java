@@ -1,6 +1,7 @@
 package com.example.mediaservice.producer;
 
 import com.example.mediaservice.entity.User;
+import com.example.mediaservice.service.EventLogService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -18,6 +19,9 @@ public class UserProducerService {
     @Autowired
     private  KafkaTemplate<String, User> userTemplate;
 
+    @Autowired
+    private EventLogService eventLogService;
+
 //    @Autowired
 //    private  KafkaTemplate<String, String> userTemplate;
 
@@ -28,9 +32,9 @@ public class UserProducerService {
 
         future.whenComplete((result, ex) -> {
             if (ex == null) {
-                log.info("Sent update key= {} user='{}' with offset=[{}]", user.getEmail(), user, result.getRecordMetadata().offset());
+                eventLogService.sent("user-update", key, user);
             } else {
-                log.error("Unable to send user='{}'", user, ex);
+                log.error("Unable to send user-update event with key: {}", key, ex);
             }
         });
     }
@@ -42,9 +46,9 @@ public class UserProducerService {
 
         future.whenComplete((result, ex) -> {
             if (ex == null) {
-                log.info("Sent create key= {} user='{}' with offset=[{}]", user.getEmail(), user, result.getRecordMetadata().offset());
+                eventLogService.sent("user-create", key, user);
             } else {
-                log.error("Unable to send user='{}'", user, ex);
+                log.error("Unable to send user-create event with key: {}", key, ex);
             }
         });
     }
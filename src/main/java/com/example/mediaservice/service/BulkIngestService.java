@@ -0,0 +1,142 @@
+package com.example.mediaservice.service;
+
+import com.example.mediaservice.dto.BulkItemResultDto;
+import com.example.mediaservice.dto.BulkResultDto;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Nhận hàng loạt event từ một JSON array hoặc NDJSON.
+ * <p>
+ * Body được đọc tuần tự, mỗi phần tử được validate và gửi Kafka ngay mà không chờ, nên producer gom được
+ * nhiều record vào một batch. Cứ mỗi media.bulk.chunk-size phần tử thì chờ Kafka xác nhận, để bộ nhớ
+ * không phụ thuộc kích thước request.
+ */
+@Slf4j
+@Service
+public class BulkIngestService {
+
+    public static final String ACCEPTED = "accepted";
+    public static final String REJECTED = "rejected";
+    public static final String FAILED = "failed";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${media.bulk.max-items:10000}")
+    private int maxItems;
+
+    @Value("${media.bulk.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${media.bulk.send-timeout:30s}")
+    private Duration sendTimeout;
+
+    public BulkIngestService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Một phần tử đã validate, sẵn sàng gửi
+     * @param id    id được cấp cho phần tử
+     * @param event event Kafka
+     */
+    public record BulkItem<E>(String id, E event) {
+    }
+
+    /**
+     * Reads every item of the body and sends it.
+     *
+     * @param body    A JSON array or NDJSON stream of items.
+     * @param type    The item type.
+     * @param prepare Validates an item and builds its event; any exception rejects the item.
+     * @param send    Sends an event without waiting for the broker.
+     */
+    public <T, E> BulkResultDto ingest(InputStream body, Class<T> type,
+                                       Function<T, BulkItem<E>> prepare,
+                                       Function<E, CompletableFuture<?>> send) {
+        List<BulkItemResultDto> results = new ArrayList<>();
+        List<PendingItem> pending = new ArrayList<>(chunkSize);
+        String error = null;
+        int index = 0;
+
+        // MappingIterator đọc được cả phần tử của một JSON array lẫn các giá trị liên tiếp của NDJSON
+        try (MappingIterator<T> items = objectMapper.readerFor(type).readValues(body)) {
+            while (items.hasNextValue()) {
+                if (index >= maxItems) {
+                    error = "At most " + maxItems + " items can be sent at once";
+                    break;
+                }
+                T item = items.nextValue();
+                BulkItem<E> prepared;
+                try {
+                    prepared = prepare.apply(item);
+                } catch (RuntimeException e) {
+                    results.add(new BulkItemResultDto(index++, null, REJECTED, e.getMessage()));
+                    continue;
+                }
+
+                try {
+                    pending.add(new PendingItem(index, prepared.id(), send.apply(prepared.event())));
+                } catch (Exception e) {
+                    results.add(new BulkItemResultDto(index, prepared.id(), FAILED, e.getMessage()));
+                }
+                index++;
+
+                if (pending.size() >= chunkSize) {
+                    awaitPending(pending, results);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Stopped reading bulk request at item {}: {}", index, e.getMessage());
+            error = "Invalid item at index " + index + ": " + e.getMessage();
+        }
+        awaitPending(pending, results);
+
+        results.sort(Comparator.comparingInt(BulkItemResultDto::index));
+        int accepted = count(results, ACCEPTED);
+        int rejected = count(results, REJECTED);
+        int failed = count(results, FAILED);
+        log.info("Bulk request of {} items: {} accepted, {} rejected, {} failed", results.size(), accepted, rejected, failed);
+        return new BulkResultDto(accepted, rejected, failed, results, error);
+    }
+
+    private void awaitPending(List<PendingItem> pending, List<BulkItemResultDto> results) {
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        for (PendingItem item : pending) {
+            try {
+                item.future().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                results.add(new BulkItemResultDto(item.index(), item.id(), ACCEPTED, null));
+            } catch (ExecutionException e) {
+                results.add(new BulkItemResultDto(item.index(), item.id(), FAILED, e.getCause().getMessage()));
+            } catch (TimeoutException e) {
+                results.add(new BulkItemResultDto(item.index(), item.id(), FAILED, "Timed out waiting for Kafka"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new BulkItemResultDto(item.index(), item.id(), FAILED, "Interrupted"));
+            }
+        }
+        pending.clear();
+    }
+
+    private int count(List<BulkItemResultDto> results, String status) {
+        return (int) results.stream().filter(result -> status.equals(result.status())).count();
+    }
+
+    private record PendingItem(int index, String id, CompletableFuture<?> future) {
+    }
+}
@@ -1,17 +1,24 @@
 package com.example.mediaservice.service;
 
+import com.example.mediaservice.config.MetricsConfig;
 import com.example.mediaservice.entity.Channel;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+@Timed(MetricsConfig.REDIS_SERVICE_TIMER)
 @Slf4j
 @AllArgsConstructor
 @Service
@@ -20,16 +27,24 @@ public class ChannelRedisService {
     private static final String CHANNEL_HASH_KEY = "channel";
     private static final String GROUP_CHANNELS_SET_KEY = "group:channels";
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+
+    private String getChannelKey(String channelId) {
+        return CHANNEL_HASH_KEY + ":" + RedisKeys.tag(channelId);
+    }
+
+    private String getGroupChannelsKey(String groupId) {
+        return GROUP_CHANNELS_SET_KEY + ":" + RedisKeys.tag(groupId);
+    }
 
     public void saveChannel(Channel channel) {
         try {
-            HashOperations<String, String, Object> hashOps = redisTemplate.opsForHash();
+            HashOperations<String, String, String> hashOps = redisTemplate.opsForHash();
             String channelKey = String.valueOf(channel.getChannelId());
 
-            Map<String, Object> channelMap = new HashMap<>();
+            Map<String, String> channelMap = new HashMap<>();
             channelMap.put("channelId", String.valueOf(channel.getChannelId()));
-            channelMap.put("name", channel.getName() != null ? channel.getName().toString() : null);
+            channelMap.put("name", String.valueOf(channel.getName()));
             channelMap.put("groupId", String.valueOf(channel.getGroupId()));
             // Mark as default if name is "general"
             if ("general".equals(channel.getName().toString())) {
@@ -37,30 +52,30 @@ public class ChannelRedisService {
             }
 
             // Save channel by ID
-            hashOps.putAll(CHANNEL_HASH_KEY + ":" + channelKey, channelMap);
+            hashOps.putAll(getChannelKey(channelKey), channelMap);
 
             // Add channel ID to the group's channel set
-            redisTemplate.opsForSet().add(GROUP_CHANNELS_SET_KEY + ":" + channel.getGroupId(), channelKey);
+            redisTemplate.opsForSet().add(getGroupChannelsKey(String.valueOf(channel.getGroupId())), channelKey);
 
-            log.info("Saved channel to Redis with ID: {} for group: {}", channelKey, channel.getGroupId());
+            log.debug("Saved channel to Redis with ID: {} for group: {}", channelKey, channel.getGroupId());
         } catch (Exception e) {
             log.error("Error saving channel to Redis: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to save channel to Redis", e);
         }
     }
 
-    public Map<String, Object> getChannel(String channelId) {
+    public Map<String, String> getChannel(String channelId) {
         try {
-            HashOperations<String, String, Object> hashOps = redisTemplate.opsForHash();
-            String channelKey = CHANNEL_HASH_KEY + ":" + channelId;
-            Map<String, Object> channelMap = hashOps.entries(channelKey);
+            HashOperations<String, String, String> hashOps = redisTemplate.opsForHash();
+            String channelKey = getChannelKey(channelId);
+            Map<String, String> channelMap = hashOps.entries(channelKey);
 
             if (channelMap.isEmpty()) {
                 log.warn("Channel not found in Redis with ID: {}", channelId);
                 return null;
             }
 
-            log.info("Retrieved channel from Redis with ID: {}", channelId);
+            log.debug("Retrieved channel from Redis with ID: {}", channelId);
             return channelMap;
         } catch (Exception e) {
             log.error("Error retrieving channel from Redis: {}", e.getMessage(), e);
@@ -68,30 +83,58 @@ public class ChannelRedisService {
         }
     }
 
-    public Set<Map<String, Object>> getGroupChannels(String groupId) {
+    public Set<Map<String, String>> getGroupChannels(String groupId) {
         try {
             // Get all channel IDs for the group
-            Set<Object> channelIds = redisTemplate.opsForSet().members(GROUP_CHANNELS_SET_KEY + ":" + groupId);
+            Set<String> channelIds = redisTemplate.opsForSet().members(getGroupChannelsKey(groupId));
 
             if (channelIds == null || channelIds.isEmpty()) {
                 log.warn("No channels found for group: {}", groupId);
                 return Set.of();
             }
 
-            // Retrieve details for each channel
-            return channelIds.stream()
-                    .map(channelId -> getChannel(channelId.toString()))
-                    .filter(channel -> channel != null)
-                    .collect(Collectors.toSet());
+            // Retrieve details for all channels in one pipeline
+            return new HashSet<>(getChannels(channelIds).values());
         } catch (Exception e) {
             log.error("Error retrieving group channels from Redis: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to retrieve group channels from Redis", e);
         }
     }
 
-    public Map<String, Object> getDefaultChannelForGroup(String groupId) {
+    /**
+     * Reads many channels with one pipelined batch of HGETALL.
+     *
+     * @return Found channels keyed by channel id; missing channels are left out.
+     */
+    public Map<String, Map<String, String>> getChannels(Collection<String> channelIds) {
+        try {
+            List<String> keys = channelIds.stream().map(this::getChannelKey).toList();
+            List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    connection.hashCommands().hGetAll(key.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+
+            Map<String, Map<String, String>> channels = new HashMap<>();
+            int i = 0;
+            for (String channelId : channelIds) {
+                @SuppressWarnings("unchecked")
+                Map<String, String> channel = (Map<String, String>) replies.get(i++);
+                if (channel != null && !channel.isEmpty()) {
+                    channels.put(channelId, channel);
+                }
+            }
+            return channels;
+        } catch (Exception e) {
+            log.error("Error retrieving channels from Redis: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to retrieve channels from Redis", e);
+        }
+    }
+
+    public Map<String, String> getDefaultChannelForGroup(String groupId) {
         try {
-            Set<Map<String, Object>> channels = getGroupChannels(groupId);
+            Set<Map<String, String>> channels = getGroupChannels(groupId);
             return channels.stream()
                     .filter(channel -> "true".equals(channel.get("isDefault")))
                     .findFirst()
@@ -104,16 +147,16 @@ public class ChannelRedisService {
 
     public void deleteChannel(String channelId) {
         try {
-            Map<String, Object> channel = getChannel(channelId);
+            Map<String, String> channel = getChannel(channelId);
             if (channel != null) {
-                String groupId = channel.get("groupId").toString();
+                String groupId = channel.get("groupId");
                 // Remove from group's channel set
-                redisTemplate.opsForSet().remove(GROUP_CHANNELS_SET_KEY + ":" + groupId, channelId);
+                redisTemplate.opsForSet().remove(getGroupChannelsKey(groupId), channelId);
             }
 
-            String channelKey = CHANNEL_HASH_KEY + ":" + channelId;
+            String channelKey = getChannelKey(channelId);
             redisTemplate.delete(channelKey);
-            log.info("Deleted channel from Redis with ID: {}", channelId);
+            log.debug("Deleted channel from Redis with ID: {}", channelId);
         } catch (Exception e) {
             log.error("Error deleting channel from Redis: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to delete channel from Redis", e);
@@ -1,27 +1,30 @@
 package com.example.mediaservice.service;
 
+import com.example.mediaservice.config.JsonRedisCodec;
+import com.example.mediaservice.config.MetricsConfig;
 import com.example.mediaservice.dto.CommentDto;
+import com.example.mediaservice.dto.FeedChangesDto;
 import com.example.mediaservice.dto.UserDto;
 import com.example.mediaservice.entity.Comment;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
+@Timed(MetricsConfig.REDIS_SERVICE_TIMER)
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CommentRedisService {
 
-    // Lưu comments cho bài post: post:{postId}:comments -> hash {commentId: commentJson}
+    // Lưu comments cho bài post: post:{postId}:comments (postId là hash tag cho cluster) -> hash {commentId: commentJson}
     private static final String POST_COMMENTS_KEY_PREFIX = "post:";
     private static final String POST_COMMENTS_KEY_SUFFIX = ":comments";
 
@@ -30,22 +33,24 @@ public class CommentRedisService {
     private static final String COMMENT_REPLIES_KEY_SUFFIX = ":replies";
 
     private final RedisTemplate<String, String> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final JsonRedisCodec<CommentDto> commentCodec;
+    private final FeedChangeService feedChangeService;
 
     private String getPostCommentsKey(String postId) {
-        return POST_COMMENTS_KEY_PREFIX + postId + POST_COMMENTS_KEY_SUFFIX;
+        return POST_COMMENTS_KEY_PREFIX + RedisKeys.tag(postId) + POST_COMMENTS_KEY_SUFFIX;
     }
 
     private String getCommentRepliesKey(String commentId) {
-        return COMMENT_REPLIES_KEY_PREFIX + commentId + COMMENT_REPLIES_KEY_SUFFIX;
+        return COMMENT_REPLIES_KEY_PREFIX + RedisKeys.tag(commentId) + COMMENT_REPLIES_KEY_SUFFIX;
     }
 
     /**
      * Lưu comment vào Redis
      * - Nếu postId != null: lưu vào post:{postId}:comments
      * - Nếu postId == null và parentId != null: lưu vào comment:{parentId}:replies
+     * @return comment đã lưu
      */
-    public void saveComment(Comment comment) {
+    public CommentDto saveComment(Comment comment) {
         try {
             UserDto authorDto = new UserDto(
                     String.valueOf(comment.getAuthor().getFirstName()),
@@ -66,25 +71,28 @@ public class CommentRedisService {
                     comment.getCreatedAt()
             );
 
-            String jsonValue = objectMapper.writeValueAsString(commentDto);
+            String jsonValue = commentCodec.encode(commentDto);
             String field = String.valueOf(comment.getId());
 
             // Comment cho bài post
             if (comment.getPostId() != null) {
                 String key = getPostCommentsKey(String.valueOf(comment.getPostId()));
                 redisTemplate.opsForHash().put(key, field, jsonValue);
-                log.info("Saved comment {} for post {} in Redis", comment.getId(), comment.getPostId());
+                feedChangeService.recordChange(key, field);
+                log.debug("Saved comment {} for post {} in Redis", comment.getId(), comment.getPostId());
             }
             // Reply cho comment khác
             else if (comment.getParentId() != null) {
                 String key = getCommentRepliesKey(String.valueOf(comment.getParentId()));
                 redisTemplate.opsForHash().put(key, field, jsonValue);
-                log.info("Saved reply {} for comment {} in Redis", comment.getId(), comment.getParentId());
+                feedChangeService.recordChange(key, field);
+                log.debug("Saved reply {} for comment {} in Redis", comment.getId(), comment.getParentId());
             } else {
                 log.warn("Comment {} has both postId and parentId null - cannot save", comment.getId());
                 throw new IllegalArgumentException("Comment must have either postId or parentId");
             }
-        } catch (JsonProcessingException e) {
+            return commentDto;
+        } catch (SerializationException e) {
             log.error("Failed to serialize comment: {}", e.getMessage(), e);
             throw new RuntimeException("Error serializing comment", e);
         }
@@ -102,25 +110,54 @@ public class CommentRedisService {
         if (comment.getPostId() != null) {
             String key = getPostCommentsKey(String.valueOf(comment.getPostId()));
             redisTemplate.opsForHash().delete(key, commentId);
-            log.info("Removed comment {} from post {} in Redis", commentId, comment.getPostId());
+            feedChangeService.recordChange(key, commentId);
+            log.debug("Removed comment {} from post {} in Redis", commentId, comment.getPostId());
         }
         // Xóa reply của comment
         else if (comment.getParentId() != null) {
             String key = getCommentRepliesKey(String.valueOf(comment.getParentId()));
             redisTemplate.opsForHash().delete(key, commentId);
-            log.info("Removed reply {} from comment {} in Redis", commentId, comment.getParentId());
+            feedChangeService.recordChange(key, commentId);
+            log.debug("Removed reply {} from comment {} in Redis", commentId, comment.getParentId());
         }
     }
 
+    /**
+     * ETag danh sách comment của post (epoch và version), đổi sau mỗi thay đổi
+     */
+    public String getPostCommentsETag(String postId) {
+        return feedChangeService.getETag(getPostCommentsKey(postId));
+    }
+
+    /**
+     * ETag danh sách reply của comment (epoch và version), đổi sau mỗi thay đổi
+     */
+    public String getCommentRepliesETag(String commentId) {
+        return feedChangeService.getETag(getCommentRepliesKey(commentId));
+    }
+
+    /**
+     * Các comment của post thay đổi sau version since; comment đã xóa chỉ trả về id
+     */
+    public FeedChangesDto<CommentDto> getPostCommentChanges(String postId, String since, int limit) {
+        return getChanges(getPostCommentsKey(postId), since, limit);
+    }
+
+    /**
+     * Các reply của comment thay đổi sau version since; reply đã xóa chỉ trả về id
+     */
+    public FeedChangesDto<CommentDto> getCommentReplyChanges(String commentId, String since, int limit) {
+        return getChanges(getCommentRepliesKey(commentId), since, limit);
+    }
+
     /**
      * Lấy tất cả comments của một bài post
      */
     public List<CommentDto> getCommentsByPost(String postId) {
         String key = getPostCommentsKey(postId);
-        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+        List<String> values = redisTemplate.<String, String>opsForHash().values(key);
 
-        return entries.values().stream()
-                .map(Object::toString)
+        return values.stream()
                 .map(this::deserializeComment)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
@@ -131,10 +168,9 @@ public class CommentRedisService {
      */
     public List<CommentDto> getRepliesByComment(String commentId) {
         String key = getCommentRepliesKey(commentId);
-        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+        List<String> values = redisTemplate.<String, String>opsForHash().values(key);
 
-        return entries.values().stream()
-                .map(Object::toString)
+        return values.stream()
                 .map(this::deserializeComment)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
@@ -145,12 +181,12 @@ public class CommentRedisService {
      */
     public CommentDto getCommentById(String postId, String commentId) {
         String key = getPostCommentsKey(postId);
-        Object value = redisTemplate.opsForHash().get(key, commentId);
+        String value = redisTemplate.<String, String>opsForHash().get(key, commentId);
         if (value == null) {
             log.warn("Comment {} not found in post {}", commentId, postId);
             return null;
         }
-        return deserializeComment(value.toString());
+        return deserializeComment(value);
     }
 
     /**
@@ -158,17 +194,37 @@ public class CommentRedisService {
      */
     public CommentDto getReplyById(String parentCommentId, String replyId) {
         String key = getCommentRepliesKey(parentCommentId);
-        Object value = redisTemplate.opsForHash().get(key, replyId);
+        String value = redisTemplate.<String, String>opsForHash().get(key, replyId);
         if (value == null) {
             log.warn("Reply {} not found in comment {}", replyId, parentCommentId);
             return null;
         }
-        return deserializeComment(value.toString());
+        return deserializeComment(value);
+    }
+
+    // Id có trong change log nhưng không còn trong hash là comment đã bị xóa
+    private FeedChangesDto<CommentDto> getChanges(String feedKey, String since, int limit) {
+        FeedChangeService.ChangeSet changeSet = feedChangeService.getChanges(feedKey, since, limit);
+        List<CommentDto> changed = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+
+        if (!changeSet.ids().isEmpty()) {
+            List<String> values = redisTemplate.<String, String>opsForHash().multiGet(feedKey, changeSet.ids());
+            for (int i = 0; i < changeSet.ids().size(); i++) {
+                CommentDto comment = values.get(i) != null ? deserializeComment(values.get(i)) : null;
+                if (comment != null) {
+                    changed.add(comment);
+                } else {
+                    deleted.add(changeSet.ids().get(i));
+                }
+            }
+        }
+        return new FeedChangesDto<>(changeSet.epoch(), changeSet.version(), changed, deleted, changeSet.hasMore(), changeSet.resyncRequired());
     }
 
     private CommentDto deserializeComment(String json) {
         try {
-            return objectMapper.readValue(json, CommentDto.class);
+            return commentCodec.decode(json);
         } catch (Exception e) {
             log.error("Failed to deserialize comment: {}", e.getMessage(), e);
             return null;
@@ -0,0 +1,242 @@
+package com.example.mediaservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer.StreamMessageListenerContainerOptions;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer.StreamReadRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bus sự kiện giữa các instance trên một Redis Stream (bus:events).
+ * <p>
+ * Mỗi instance có consumer group riêng trên stream nên nhận mọi sự kiện, kể cả sự kiện do chính nó phát.
+ * Consumer layer phát sự kiện một lần sau khi ghi Redis; các instance khác dùng chúng để đẩy tới client (SSE)
+ * và xóa cache local mà không phải tự consume lại các topic Kafka. Stream được giới hạn bằng MAXLEN xấp xỉ,
+ * group của instance bị xóa khi shutdown. Mỗi instance giữ một key heartbeat có TTL (bus:heartbeat:&lt;group&gt;);
+ * group không còn heartbeat là của instance đã chết và được dọn khi instance khác khởi động. Nếu group của
+ * chính instance bị xóa (heartbeat trễ, Redis flush), nó được tạo lại khi đọc gặp NOGROUP.
+ */
+@Slf4j
+@Service
+public class EventBusService {
+
+    private static final String BUS_STREAM_KEY = "bus:events";
+    private static final String HEARTBEAT_KEY_PREFIX = "bus:heartbeat:";
+    private static final String TYPE_FIELD = "type";
+    private static final String TOPIC_FIELD = "topic";
+    private static final String DATA_FIELD = "data";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisConnectionFactory connectionFactory;
+    private final ObjectMapper objectMapper;
+    private final List<java.util.function.Consumer<BusEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final String groupName;
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bus-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private StreamMessageListenerContainer<String, MapRecord<String, String, String>> container;
+
+    @Value("${media.bus.max-length:10000}")
+    private long maxLength;
+
+    @Value("${media.bus.poll-timeout:1s}")
+    private Duration pollTimeout;
+
+    @Value("${media.bus.batch-size:100}")
+    private int batchSize;
+
+    @Value("${media.bus.heartbeat-interval:10s}")
+    private Duration heartbeatInterval;
+
+    @Value("${media.bus.heartbeat-ttl:30s}")
+    private Duration heartbeatTtl;
+
+    public EventBusService(RedisTemplate<String, String> redisTemplate,
+                           RedisConnectionFactory connectionFactory,
+                           ObjectMapper objectMapper,
+                           @Value("${spring.application.name}") String applicationName) {
+        this.redisTemplate = redisTemplate;
+        this.connectionFactory = connectionFactory;
+        this.objectMapper = objectMapper;
+        this.groupName = applicationName + ":" + UUID.randomUUID();
+    }
+
+    /**
+     * Sự kiện trên bus
+     * @param type  loại sự kiện, vd. post-created, group-member-added
+     * @param topic đối tượng bị thay đổi, vd. group:{id}
+     * @param data  nội dung JSON, có thể null
+     */
+    public record BusEvent(String type, String topic, JsonNode data) {
+    }
+
+    @PostConstruct
+    public void start() {
+        // Heartbeat có trước group để instance khác đang dọn không coi group mới là group chết
+        heartbeat();
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat,
+                heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+        removeStaleGroups();
+
+        // Chỉ nhận sự kiện phát sau khi instance khởi động
+        redisTemplate.opsForStream().createGroup(BUS_STREAM_KEY, ReadOffset.latest(), groupName);
+
+        StreamMessageListenerContainerOptions<String, MapRecord<String, String, String>> options =
+                StreamMessageListenerContainerOptions.builder()
+                        .pollTimeout(pollTimeout)
+                        .batchSize(batchSize)
+                        .build();
+        container = StreamMessageListenerContainer.create(connectionFactory, options);
+        // Không hủy subscription khi đọc lỗi: handleReadError tạo lại group nếu nó bị xóa
+        container.register(StreamReadRequest.builder(StreamOffset.create(BUS_STREAM_KEY, ReadOffset.lastConsumed()))
+                .consumer(Consumer.from(groupName, groupName))
+                .autoAcknowledge(true)
+                .cancelOnError(e -> false)
+                .errorHandler(this::handleReadError)
+                .build(), this::dispatch);
+        container.start();
+
+        log.info("Joined event bus {} as consumer group {}", BUS_STREAM_KEY, groupName);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeatExecutor.shutdownNow();
+        if (container != null) {
+            container.stop();
+        }
+        try {
+            redisTemplate.opsForStream().destroyGroup(BUS_STREAM_KEY, groupName);
+            redisTemplate.delete(HEARTBEAT_KEY_PREFIX + groupName);
+        } catch (Exception e) {
+            log.warn("Error removing consumer group {} from event bus: {}", groupName, e.getMessage());
+        }
+    }
+
+    /**
+     * Registers a listener called for every event on the bus, on the bus polling thread.
+     * Listeners must be quick and filter the events they care about.
+     */
+    public void addListener(java.util.function.Consumer<BusEvent> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Publishes an event to all instances. Failures are logged only: the bus is best effort and must
+     * not fail the Kafka consumer that publishes.
+     */
+    public void publish(String type, String topic, Object data) {
+        try {
+            Map<String, String> fields = data != null
+                    ? Map.of(TYPE_FIELD, type, TOPIC_FIELD, topic, DATA_FIELD, objectMapper.writeValueAsString(data))
+                    : Map.of(TYPE_FIELD, type, TOPIC_FIELD, topic);
+
+            MapRecord<String, String, String> record = StreamRecords.newRecord()
+                    .in(BUS_STREAM_KEY)
+                    .ofMap(fields);
+            redisTemplate.opsForStream().add(record, XAddOptions.maxlen(maxLength).approximateTrimming(true));
+        } catch (Exception e) {
+            log.error("Error publishing {} event for {} to event bus: {}", type, topic, e.getMessage(), e);
+        }
+    }
+
+    private void dispatch(MapRecord<String, String, String> record) {
+        BusEvent event;
+        try {
+            Map<String, String> fields = record.getValue();
+            String data = fields.get(DATA_FIELD);
+            event = new BusEvent(fields.get(TYPE_FIELD), fields.get(TOPIC_FIELD),
+                    data != null ? objectMapper.readTree(data) : null);
+        } catch (Exception e) {
+            log.error("Error reading event bus record {}: {}", record.getId(), e.getMessage(), e);
+            return;
+        }
+
+        for (java.util.function.Consumer<BusEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (Exception e) {
+                log.error("Error handling {} event for {}: {}", event.type(), event.topic(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            redisTemplate.opsForValue().set(HEARTBEAT_KEY_PREFIX + groupName, "1", heartbeatTtl);
+        } catch (Exception e) {
+            log.warn("Error refreshing event bus heartbeat of {}: {}", groupName, e.getMessage());
+        }
+    }
+
+    // Group bị xóa khi instance đang chạy (bị coi là chết, Redis flush): tạo lại từ vị trí hiện tại của stream,
+    // các sự kiện trong khoảng mất group bị bỏ qua
+    private void handleReadError(Throwable e) {
+        if (!isNoGroup(e)) {
+            log.error("Error reading event bus: {}", e.getMessage(), e);
+            return;
+        }
+        try {
+            heartbeat();
+            redisTemplate.opsForStream().createGroup(BUS_STREAM_KEY, ReadOffset.latest(), groupName);
+            log.warn("Recreated consumer group {} on event bus after it was removed", groupName);
+        } catch (Exception ex) {
+            log.error("Error recreating consumer group {} on event bus: {}", groupName, ex.getMessage(), ex);
+        }
+    }
+
+    private static boolean isNoGroup(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOGROUP")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Group của instance bị kill không kịp xóa: bỏ đi khi key heartbeat của nó đã hết hạn. Không dựa vào idle
+    // của XINFO CONSUMERS vì trước Redis 7.2 XREADGROUP BLOCK không có kết quả vẫn reset idle
+    private void removeStaleGroups() {
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(BUS_STREAM_KEY))) {
+                return;
+            }
+            List<StreamInfo.XInfoGroup> groups = redisTemplate.opsForStream().groups(BUS_STREAM_KEY).stream().toList();
+            for (StreamInfo.XInfoGroup group : groups) {
+                boolean stale = !group.groupName().equals(groupName)
+                        && !Boolean.TRUE.equals(redisTemplate.hasKey(HEARTBEAT_KEY_PREFIX + group.groupName()));
+                if (stale) {
+                    redisTemplate.opsForStream().destroyGroup(BUS_STREAM_KEY, group.groupName());
+                    log.info("Removed stale consumer group {} from event bus", group.groupName());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Error cleaning up event bus consumer groups: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.mediaservice.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Log của các event Kafka được gửi và consume.
+ * <p>
+ * Mỗi event một dòng key=value chỉ gồm topic, partition, offset và key, được lấy mẫu theo topic
+ * (media.event-log.sample-rate, ghi đè bằng media.event-log.topic-sample-rates). Payload đầy đủ chỉ được ghi
+ * cho các key đang bật debug qua /admin/event-log/debug; việc bật/tắt được phát qua {@link EventBusService}
+ * tới mọi instance và tự hết hạn sau media.event-log.debug-ttl.
+ */
+@Slf4j
+@Service
+public class EventLogService {
+
+    public static final String DEBUG_EVENT = "event-log-debug";
+
+    private static final String DEBUG_TOPIC = "event-log";
+
+    private final EventBusService eventBusService;
+    private final Map<String, Double> sampleRates = new ConcurrentHashMap<>();
+    // key -> thời điểm hết hạn (epoch millis)
+    private final Map<String, Long> debugKeys = new ConcurrentHashMap<>();
+
+    @Value("${media.event-log.sample-rate:0.01}")
+    private double defaultSampleRate;
+
+    // Danh sách topic=rate, vd. post-created=0.1
+    @Value("${media.event-log.topic-sample-rates:}")
+    private List<String> topicSampleRates;
+
+    @Value("${media.event-log.debug-ttl:15m}")
+    private Duration debugTtl;
+
+    public EventLogService(EventBusService eventBusService) {
+        this.eventBusService = eventBusService;
+    }
+
+    @PostConstruct
+    public void start() {
+        for (String entry : topicSampleRates) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid media.event-log.topic-sample-rates entry: " + entry);
+            }
+            sampleRates.put(parts[0].trim(), Double.parseDouble(parts[1].trim()));
+        }
+
+        eventBusService.addListener(event -> {
+            if (DEBUG_EVENT.equals(event.type()) && event.data() != null) {
+                String key = event.data().path("key").asText();
+                long expiresAt = event.data().path("expiresAt").asLong();
+                if (expiresAt > System.currentTimeMillis()) {
+                    debugKeys.put(key, expiresAt);
+                } else {
+                    debugKeys.remove(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Logs an event applied by a listener.
+     */
+    public void consumed(ConsumerRecord<?, ?> record) {
+        String key = String.valueOf(record.key());
+        if (isDebugKey(key)) {
+            log.info("event=consumed topic={} partition={} offset={} key={} payload={}",
+                    record.topic(), record.partition(), record.offset(), key, record.value());
+        } else if (log.isInfoEnabled() && sampled(record.topic())) {
+            log.info("event=consumed topic={} partition={} offset={} key={}",
+                    record.topic(), record.partition(), record.offset(), key);
+        }
+    }
+
+    /**
+     * Logs an event handed to a producer.
+     */
+    public void sent(String topic, String key, Object payload) {
+        if (isDebugKey(key)) {
+            log.info("event=sent topic={} key={} payload={}", topic, key, payload);
+        } else if (log.isInfoEnabled() && sampled(topic)) {
+            log.info("event=sent topic={} key={}", topic, key);
+        }
+    }
+
+    /**
+     * Logs every event of a key with its payload on all instances, for media.event-log.debug-ttl.
+     *
+     * @return When the debug logging stops.
+     */
+    public Instant enableDebug(String key) {
+        long expiresAt = System.currentTimeMillis() + debugTtl.toMillis();
+        debugKeys.put(key, expiresAt);
+        eventBusService.publish(DEBUG_EVENT, DEBUG_TOPIC, Map.of("key", key, "expiresAt", expiresAt));
+        return Instant.ofEpochMilli(expiresAt);
+    }
+
+    /**
+     * Stops the debug logging of a key on all instances.
+     */
+    public void disableDebug(String key) {
+        debugKeys.remove(key);
+        eventBusService.publish(DEBUG_EVENT, DEBUG_TOPIC, Map.of("key", key, "expiresAt", 0L));
+    }
+
+    /**
+     * Returns the keys logged with their payload on this instance and when their debug logging stops.
+     */
+    public Map<String, Instant> getDebugKeys() {
+        long now = System.currentTimeMillis();
+        return debugKeys.entrySet().stream()
+                .filter(entry -> entry.getValue() > now)
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> Instant.ofEpochMilli(entry.getValue())));
+    }
+
+    private boolean isDebugKey(String key) {
+        if (debugKeys.isEmpty()) {
+            return false;
+        }
+        Long expiresAt = debugKeys.get(key);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt <= System.currentTimeMillis()) {
+            debugKeys.remove(key, expiresAt);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean sampled(String topic) {
+        double rate = sampleRates.getOrDefault(topic, defaultSampleRate);
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+}
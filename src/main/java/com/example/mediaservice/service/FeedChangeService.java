@@ -0,0 +1,133 @@
+package com.example.mediaservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Version và change log của từng feed (hash post/comment).
+ * <p>
+ * Mỗi thay đổi chạy scripts/feed-change.lua: tăng &lt;feed&gt;:version và ghi id vào &lt;feed&gt;:changes với version
+ * mới làm score, nên mỗi id chỉ có một entry (lần thay đổi cuối). Các key nằm cùng slot với feed.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class FeedChangeService {
+
+    private static final String VERSION_KEY_SUFFIX = ":version";
+    private static final String CHANGES_KEY_SUFFIX = ":changes";
+    private static final String CHANGES_FLOOR_KEY_SUFFIX = ":changes-floor";
+    private static final String EPOCH_KEY_SUFFIX = ":epoch";
+
+    private static final RedisScript<Long> FEED_CHANGE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/feed-change.lua"), Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    @Value("${media.feed.max-changes:1000}")
+    private int maxChanges;
+
+    /**
+     * Ids changed after a version, in change order
+     * @param epoch          The feed's epoch (null if it never changed).
+     * @param version        Last version included.
+     * @param ids            Changed ids.
+     * @param hasMore        More changes exist after version.
+     * @param resyncRequired The change log was trimmed past the requested version, or the requested version
+     *                       belongs to another epoch (the counter was reset).
+     */
+    public record ChangeSet(String epoch, long version, List<String> ids, boolean hasMore, boolean resyncRequired) {
+    }
+
+    /**
+     * Records a change of one element of a feed and bumps the feed version.
+     *
+     * @param feedKey The feed's hash key, e.g. group:{gid}:posts.
+     * @param id      The id of the created, updated or deleted element.
+     * @return The new feed version.
+     */
+    public long recordChange(String feedKey, String id) {
+        Long version = redisTemplate.execute(FEED_CHANGE_SCRIPT,
+                List.of(feedKey + VERSION_KEY_SUFFIX, feedKey + CHANGES_KEY_SUFFIX, feedKey + CHANGES_FLOOR_KEY_SUFFIX,
+                        feedKey + EPOCH_KEY_SUFFIX),
+                id, String.valueOf(maxChanges), Long.toHexString(ThreadLocalRandom.current().nextLong()));
+        return version != null ? version : 0;
+    }
+
+    /**
+     * Returns the current version of a feed (0 if it never changed).
+     */
+    public long getVersion(String feedKey) {
+        String version = redisTemplate.opsForValue().get(feedKey + VERSION_KEY_SUFFIX);
+        return version != null ? Long.parseLong(version) : 0;
+    }
+
+    /**
+     * Returns an ETag for the feed: its epoch and version, so that a version reached again after the counter
+     * was reset (Redis flush) does not match an ETag of the old content.
+     */
+    public String getETag(String feedKey) {
+        List<String> values = redisTemplate.opsForValue()
+                .multiGet(List.of(feedKey + VERSION_KEY_SUFFIX, feedKey + EPOCH_KEY_SUFFIX));
+        long version = parseCounter(values != null ? values.get(0) : null);
+        String epoch = values != null ? values.get(1) : null;
+        return epoch != null ? epoch + "-" + version : String.valueOf(version);
+    }
+
+    /**
+     * Reads the ids changed after a version.
+     *
+     * @param feedKey The feed's hash key.
+     * @param since   The "epoch-version" the client already has, or empty for the whole change log.
+     * @param limit   Maximum number of ids to return.
+     * @throws IllegalArgumentException if since is malformed.
+     */
+    public ChangeSet getChanges(String feedKey, String since, int limit) {
+        FeedVersion from = FeedVersion.parse(since);
+        List<String> counters = redisTemplate.opsForValue().multiGet(List.of(feedKey + VERSION_KEY_SUFFIX,
+                feedKey + CHANGES_FLOOR_KEY_SUFFIX, feedKey + EPOCH_KEY_SUFFIX));
+        long version = parseCounter(counters != null ? counters.get(0) : null);
+        long floor = parseCounter(counters != null ? counters.get(1) : null);
+        String epoch = counters != null ? counters.get(2) : null;
+
+        // Epoch khác: counter đã bị tạo lại (Redis flush) nên version của client không còn ý nghĩa, kể cả khi
+        // feed mới đã vượt qua số đó; since < floor: change log đã bị cắt qua version của client
+        if (!from.sameEpoch(epoch) || from.version() < floor || from.version() > version) {
+            return new ChangeSet(epoch, version, List.of(), false, true);
+        }
+
+        Set<ZSetOperations.TypedTuple<String>> changes = redisTemplate.opsForZSet()
+                .rangeByScoreWithScores(feedKey + CHANGES_KEY_SUFFIX, from.version() + 1, Double.POSITIVE_INFINITY, 0, limit + 1);
+
+        List<String> ids = new ArrayList<>();
+        long lastVersion = from.version();
+        boolean hasMore = false;
+        if (changes != null) {
+            for (ZSetOperations.TypedTuple<String> change : changes) {
+                if (ids.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+                ids.add(change.getValue());
+                lastVersion = change.getScore().longValue();
+            }
+        }
+
+        return new ChangeSet(epoch, hasMore ? lastVersion : Math.max(version, lastVersion), ids, hasMore, false);
+    }
+
+    private long parseCounter(String value) {
+        return value != null ? Long.parseLong(value) : 0;
+    }
+}
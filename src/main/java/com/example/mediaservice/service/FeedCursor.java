@@ -0,0 +1,35 @@
+package com.example.mediaservice.service;
+
+/**
+ * Vị trí của post cuối cùng đã trả về ("createdAt:postId"); trang sau lấy các post cũ hơn nó
+ * (cùng createdAt thì so postId).
+ */
+record FeedCursor(long createdAt, String postId) {
+
+    static final FeedCursor START = new FeedCursor(Long.MAX_VALUE, null);
+
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    static FeedCursor parse(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return START;
+        }
+        int separator = cursor.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid feed cursor: " + cursor);
+        }
+        return new FeedCursor(Long.parseLong(cursor.substring(0, separator)), cursor.substring(separator + 1));
+    }
+
+    double maxScore() {
+        return createdAt;
+    }
+
+    boolean isBefore(FeedEntry entry) {
+        if (postId == null || entry.createdAt() < createdAt) {
+            return true;
+        }
+        return entry.createdAt() == createdAt && entry.postId().compareTo(postId) < 0;
+    }
+}
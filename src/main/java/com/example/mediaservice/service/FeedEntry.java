@@ -0,0 +1,33 @@
+package com.example.mediaservice.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Một post trong feed (timeline, home feed): group chứa post và thời điểm tạo dùng để sắp xếp.
+ */
+record FeedEntry(String groupId, String postId, long createdAt) {
+
+    static final Comparator<FeedEntry> NEWEST_FIRST = Comparator
+            .comparingLong(FeedEntry::createdAt)
+            .thenComparing(FeedEntry::postId)
+            .reversed();
+
+    String toCursor() {
+        return createdAt + ":" + postId;
+    }
+
+    /**
+     * Nhóm post id theo group để đọc bằng {@link PostRedisService#getPostsByIds}.
+     */
+    static Map<String, List<String>> postIdsByGroup(List<FeedEntry> entries) {
+        Map<String, List<String>> postIds = new LinkedHashMap<>();
+        for (FeedEntry entry : entries) {
+            postIds.computeIfAbsent(entry.groupId(), groupId -> new ArrayList<>()).add(entry.postId());
+        }
+        return postIds;
+    }
+}
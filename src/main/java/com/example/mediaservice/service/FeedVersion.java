@@ -0,0 +1,40 @@
+package com.example.mediaservice.service;
+
+import java.util.Objects;
+
+/**
+ * Vị trí của client trong change log của feed ("epoch-version"). Epoch đổi khi counter version bị tạo lại
+ * (Redis flush), nên cùng một số version ở hai epoch khác nhau không chỉ cùng một trạng thái.
+ */
+record FeedVersion(String epoch, long version) {
+
+    static final FeedVersion START = new FeedVersion(null, 0);
+
+    /**
+     * Parses "epoch-version"; an empty value starts from the beginning of the change log. A bare version (from
+     * clients of the old protocol) has no epoch and only matches version 0.
+     *
+     * @throws IllegalArgumentException if the value is malformed.
+     */
+    static FeedVersion parse(String since) {
+        if (since == null || since.isBlank()) {
+            return START;
+        }
+        try {
+            int separator = since.lastIndexOf('-');
+            if (separator < 0) {
+                return new FeedVersion(null, Long.parseLong(since));
+            }
+            return new FeedVersion(since.substring(0, separator), Long.parseLong(since.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid since, expected epoch-version: " + since);
+        }
+    }
+
+    /**
+     * Whether the client's version can be compared with the feed's: same epoch, or nothing seen yet.
+     */
+    boolean sameEpoch(String feedEpoch) {
+        return version == 0 || Objects.equals(epoch, feedEpoch);
+    }
+}
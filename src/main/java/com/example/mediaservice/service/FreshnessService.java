@@ -0,0 +1,180 @@
+package com.example.mediaservice.service;
+
+import com.example.mediaservice.dto.TopicFreshnessDto;
+import com.example.mediaservice.producer.EventHeaders;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Đo độ tươi của read model.
+ * <p>
+ * - media.event.end-to-end: từ lúc API nhận request (header x-accepted-at, nếu không có thì timestamp của record)
+ *   tới lúc consumer ghi xong Redis, theo topic.
+ * - media.kafka.consumer.lag: số record chưa xử lý của từng partition theo consumer group, tính định kỳ từ
+ *   offset đã commit và end offset.
+ * Thời điểm ghi gần nhất theo topic chỉ gồm các partition mà instance này đang consume.
+ */
+@Slf4j
+@Service
+public class FreshnessService {
+
+    private static final String END_TO_END_TIMER = "media.event.end-to-end";
+    private static final String CONSUMER_LAG_GAUGE = "media.kafka.consumer.lag";
+
+    private final MeterRegistry meterRegistry;
+    private final KafkaAdmin kafkaAdmin;
+    private final Map<String, TopicState> topics = new ConcurrentHashMap<>();
+    // group|topic|partition -> lag, giữ tham chiếu mạnh cho gauge
+    private final Map<String, AtomicLong> partitionLags = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService lagExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "consumer-lag");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private AdminClient adminClient;
+
+    @Value("${media.freshness.consumer-groups}")
+    private List<String> consumerGroups;
+
+    @Value("${media.freshness.lag-interval:15s}")
+    private Duration lagInterval;
+
+    public FreshnessService(MeterRegistry meterRegistry, KafkaAdmin kafkaAdmin) {
+        this.meterRegistry = meterRegistry;
+        this.kafkaAdmin = kafkaAdmin;
+    }
+
+    @PostConstruct
+    public void start() {
+        adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+        lagExecutor.scheduleWithFixedDelay(this::updateLags,
+                lagInterval.toMillis(), lagInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lagExecutor.shutdownNow();
+        if (adminClient != null) {
+            adminClient.close(Duration.ofSeconds(5));
+        }
+    }
+
+    /**
+     * Records that a record has been written to Redis. Call it from the listener once the write succeeded.
+     */
+    public void recordApplied(ConsumerRecord<?, ?> record) {
+        long appliedAt = System.currentTimeMillis();
+        Long header = EventHeaders.acceptedAt(record.headers());
+        long acceptedAt = header != null ? header : record.timestamp();
+        long latency = Math.max(0, appliedAt - acceptedAt);
+
+        Timer.builder(END_TO_END_TIMER)
+                .description("Time from the API accepting an event to its Redis write")
+                .tag("topic", record.topic())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(latency, TimeUnit.MILLISECONDS);
+
+        topics.computeIfAbsent(record.topic(), topic -> new TopicState()).update(acceptedAt, appliedAt, latency);
+    }
+
+    /**
+     * Returns the freshness of every topic seen by this instance, with the lag summed over all partitions.
+     */
+    public List<TopicFreshnessDto> getFreshness() {
+        Map<String, Long> lagByTopic = partitionLags.entrySet().stream()
+                .collect(Collectors.groupingBy(entry -> entry.getKey().split("\\|")[1],
+                        Collectors.summingLong(entry -> entry.getValue().get())));
+
+        return topics.entrySet().stream()
+                .map(entry -> entry.getValue().toDto(entry.getKey(), lagByTopic.getOrDefault(entry.getKey(), -1L)))
+                .sorted(Comparator.comparing(TopicFreshnessDto::topic))
+                .toList();
+    }
+
+    private void updateLags() {
+        for (String group : consumerGroups) {
+            try {
+                Map<TopicPartition, OffsetAndMetadata> committed = adminClient.listConsumerGroupOffsets(group)
+                        .partitionsToOffsetAndMetadata().get(lagInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (committed.isEmpty()) {
+                    continue;
+                }
+
+                Map<TopicPartition, OffsetSpec> request = committed.keySet().stream()
+                        .collect(Collectors.toMap(Function.identity(), partition -> OffsetSpec.latest()));
+                Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> ends = adminClient.listOffsets(request)
+                        .all().get(lagInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+                committed.forEach((partition, offset) -> {
+                    ListOffsetsResult.ListOffsetsResultInfo end = ends.get(partition);
+                    if (offset != null && end != null) {
+                        partitionLag(group, partition).set(Math.max(0, end.offset() - offset.offset()));
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Error reading lag of consumer group {}: {}", group, e.getMessage());
+            }
+        }
+    }
+
+    private AtomicLong partitionLag(String group, TopicPartition partition) {
+        String key = group + "|" + partition.topic() + "|" + partition.partition();
+        return partitionLags.computeIfAbsent(key, ignored -> {
+            AtomicLong lag = new AtomicLong();
+            Gauge.builder(CONSUMER_LAG_GAUGE, lag, AtomicLong::get)
+                    .description("Records not yet consumed by the consumer group")
+                    .tags(Tags.of("group", group, "topic", partition.topic(), "partition", String.valueOf(partition.partition())))
+                    .register(meterRegistry);
+            return lag;
+        });
+    }
+
+    private static final class TopicState {
+
+        private long lastAcceptedAt;
+        private long lastAppliedAt;
+        private long lastLatency;
+
+        synchronized void update(long acceptedAt, long appliedAt, long latency) {
+            lastAcceptedAt = acceptedAt;
+            lastAppliedAt = appliedAt;
+            lastLatency = latency;
+        }
+
+        synchronized TopicFreshnessDto toDto(String topic, long lag) {
+            return new TopicFreshnessDto(topic, Instant.ofEpochMilli(lastAcceptedAt), Instant.ofEpochMilli(lastAppliedAt),
+                    lastLatency, System.currentTimeMillis() - lastAppliedAt, lag);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.example.mediaservice.service;
+
+import com.example.mediaservice.dto.PageDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Thành viên của group: set group:users:{gid} là nguồn chính xác, cộng thêm Bloom filter cho group rất lớn.
+ * <p>
+ * Với group có từ media.membership.large-group-threshold thành viên trở lên, bitmap
+ * group:{gid}:members:bloom được giữ trong Redis (cập nhật cùng SADD trong một script) và một bản sao
+ * được cache trong process. Kết quả âm tính của bản sao local (trường hợp thường gặp) được trả ngay, không
+ * gọi Redis; kết quả dương tính được hỏi lại bằng SISMEMBER. Thành viên vừa được thêm ở instance khác có mặt
+ * trong bản sao khi sự kiện group-member-added của {@link EventBusService} tới, chậm nhất sau
+ * media.membership.local-ttl khi bản sao được load lại.
+ * <p>
+ * Các endpoint ghi post kiểm tra người ghi (email trong JWT) bằng {@link #isMember} khi
+ * media.membership.check-on-write bật.
+ */
+@Slf4j
+@Service
+public class GroupMembershipService {
+
+    private static final String GROUP_USERS_SET_KEY = "group:users";
+    private static final String GROUP_KEY_PREFIX = "group:";
+    private static final String BLOOM_KEY_SUFFIX = ":members:bloom";
+    private static final String BLOOM_BITS_KEY_SUFFIX = ":members:bloom-bits";
+    private static final String BLOOM_NEXT_KEY_SUFFIX = ":members:bloom-next";
+    private static final String BLOOM_NEXT_BITS_KEY_SUFFIX = ":members:bloom-next-bits";
+    private static final String BLOOM_LOCK_KEY_SUFFIX = ":members:bloom-lock";
+    private static final Duration BUILD_LOCK_TTL = Duration.ofMinutes(10);
+    private static final int BUILD_SCAN_COUNT = 1000;
+
+    public static final String MEMBER_ADDED_EVENT = "group-member-added";
+    public static final String MEMBERS_RESTORED_EVENT = "group-members-restored";
+
+    private static final RedisScript<Long> MEMBER_ADD_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/group-member-add.lua"), Long.class);
+    private static final RedisScript<Long> BLOOM_PROMOTE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/group-member-bloom-promote.lua"), Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisScanService redisScanService;
+    private final EventBusService eventBusService;
+    private final Cache<String, MembershipFilter> localFilters;
+    private final Set<String> buildsInProgress = ConcurrentHashMap.newKeySet();
+    private final ExecutorService buildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "group-bloom-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${media.membership.large-group-threshold:10000}")
+    private long largeGroupThreshold;
+
+    @Value("${media.membership.bloom.bits-per-member:20}")
+    private int bitsPerMember;
+
+    @Value("${media.membership.bloom.hashes:7}")
+    private int hashes;
+
+    @Value("${media.membership.bloom.max-bits:268435456}")
+    private long maxBits;
+
+    @Value("${media.membership.check-on-write:true}")
+    private boolean checkOnWrite;
+
+    public GroupMembershipService(RedisTemplate<String, String> redisTemplate,
+                                  RedisScanService redisScanService,
+                                  EventBusService eventBusService,
+                                  @Value("${media.membership.local-ttl:60s}") Duration localTtl,
+                                  @Value("${media.membership.local-max-size-kb:65536}") long localMaxSizeKb) {
+        this.redisTemplate = redisTemplate;
+        this.redisScanService = redisScanService;
+        this.eventBusService = eventBusService;
+        this.localFilters = Caffeine.newBuilder()
+                .expireAfterWrite(localTtl)
+                .maximumWeight(localMaxSizeKb)
+                .weigher((String groupId, MembershipFilter filter) -> filter.sizeKb())
+                .build();
+    }
+
+    @PostConstruct
+    public void start() {
+        // Thành viên mới thêm ở instance khác: cập nhật bản sao filter local thay vì chờ hết local-ttl.
+        // Sau khi rebuild nạp lại thành viên thì bỏ mọi bản sao
+        eventBusService.addListener(event -> {
+            if (MEMBERS_RESTORED_EVENT.equals(event.type())) {
+                localFilters.invalidateAll();
+            } else if (MEMBER_ADDED_EVENT.equals(event.type()) && event.data() != null) {
+                MembershipFilter filter = localFilters.getIfPresent(event.data().path("groupId").asText());
+                if (filter != null) {
+                    filter.add(event.data().path("userId").asText());
+                }
+            }
+        });
+    }
+
+    private String getGroupUsersKey(String groupId) {
+        return GROUP_USERS_SET_KEY + ":" + RedisKeys.tag(groupId);
+    }
+
+    private String getGroupKey(String groupId, String suffix) {
+        return GROUP_KEY_PREFIX + RedisKeys.tag(groupId) + suffix;
+    }
+
+    /**
+     * Adds a user to the group's member set and Bloom filter (SADD + SETBIT in one script).
+     *
+     * @return True if the user was not a member before.
+     */
+    public boolean addMember(String groupId, String userId) {
+        boolean added = restoreMember(groupId, userId);
+        eventBusService.publish(MEMBER_ADDED_EVENT, PushService.GROUP_TOPIC_PREFIX + groupId,
+                Map.of("groupId", groupId, "userId", userId));
+        return added;
+    }
+
+    /**
+     * Adds a member like {@link #addMember} without publishing group-member-added. Used by the read model
+     * rebuild, which calls {@link #membersRestored} once at the end instead of one bus event per member.
+     *
+     * @return True if the user was not a member before.
+     */
+    public boolean restoreMember(String groupId, String userId) {
+        try {
+            List<String> args = new ArrayList<>(hashes + 1);
+            args.add(userId);
+            for (long position : bitPositions(userId, hashes)) {
+                args.add(String.valueOf(position));
+            }
+
+            Long added = redisTemplate.execute(MEMBER_ADD_SCRIPT, List.of(
+                    getGroupUsersKey(groupId),
+                    getGroupKey(groupId, BLOOM_KEY_SUFFIX),
+                    getGroupKey(groupId, BLOOM_BITS_KEY_SUFFIX),
+                    getGroupKey(groupId, BLOOM_NEXT_KEY_SUFFIX),
+                    getGroupKey(groupId, BLOOM_NEXT_BITS_KEY_SUFFIX)), args.toArray());
+
+            MembershipFilter filter = localFilters.getIfPresent(groupId);
+            if (filter != null) {
+                filter.add(userId);
+            }
+            return added != null && added > 0;
+        } catch (Exception e) {
+            log.error("Error adding user '{}' to group {} in Redis: {}", userId, groupId, e.getMessage(), e);
+            throw new RuntimeException("Failed to add group member in Redis", e);
+        }
+    }
+
+    /**
+     * Removes a user from the group's member set. Bloom filters cannot forget members; the stale bits
+     * only cost an extra SISMEMBER until the next rebuild.
+     */
+    public void removeMember(String groupId, String userId) {
+        try {
+            redisTemplate.opsForSet().remove(getGroupUsersKey(groupId), userId);
+        } catch (Exception e) {
+            log.error("Error removing user '{}' from group {} in Redis: {}", userId, groupId, e.getMessage(), e);
+            throw new RuntimeException("Failed to remove group member in Redis", e);
+        }
+    }
+
+    /**
+     * Checks membership. For large groups a negative answer of the local Bloom filter is returned without a
+     * Redis round trip; everything else is answered with SISMEMBER.
+     */
+    public boolean isMember(String groupId, String userId) {
+        try {
+            MembershipFilter filter = localFilters.get(groupId, this::loadFilter);
+            if (!filter.mightContain(userId)) {
+                return false;
+            }
+            return Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(getGroupUsersKey(groupId), userId));
+        } catch (Exception e) {
+            log.error("Error checking membership of '{}' in group {}: {}", userId, groupId, e.getMessage(), e);
+            throw new RuntimeException("Failed to check group membership", e);
+        }
+    }
+
+    /**
+     * Whether post writes are restricted to group members (media.membership.check-on-write).
+     */
+    public boolean isCheckOnWrite() {
+        return checkOnWrite;
+    }
+
+    /**
+     * Checks whether a user may write posts to a group: always true when media.membership.check-on-write
+     * is off, otherwise {@link #isMember}.
+     */
+    public boolean canWrite(String groupId, String userId) {
+        return !checkOnWrite || isMember(groupId, userId);
+    }
+
+    /**
+     * Returns all members with SMEMBERS. Prefer {@link #scanMembers} for large groups.
+     */
+    public Set<String> getMembers(String groupId) {
+        return redisTemplate.opsForSet().members(getGroupUsersKey(groupId));
+    }
+
+    /**
+     * Returns one SSCAN page of the group's members.
+     */
+    public PageDto<String> scanMembers(String groupId, String cursor, int count) {
+        return redisScanService.scanSet(getGroupUsersKey(groupId), cursor, count);
+    }
+
+    /**
+     * Streams all members page by page, see {@link RedisScanService#forEachSetPage}.
+     */
+    public void forEachMemberPage(String groupId, int count, Consumer<List<String>> consumer) {
+        redisScanService.forEachSetPage(getGroupUsersKey(groupId), count, consumer);
+    }
+
+    public long countMembers(String groupId) {
+        Long size = redisTemplate.opsForSet().size(getGroupUsersKey(groupId));
+        return size != null ? size : 0;
+    }
+
+    /**
+     * Counts the members of several groups with pipelined SCARDs.
+     */
+    public Map<String, Long> countMembers(Collection<String> groupIds) {
+        List<String> groups = new ArrayList<>(groupIds);
+        List<Object> sizes = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String groupId : groups) {
+                connection.setCommands().sCard(getGroupUsersKey(groupId).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+
+        Map<String, Long> counts = new HashMap<>();
+        for (int i = 0; i < groups.size(); i++) {
+            Object size = sizes.get(i);
+            counts.put(groups.get(i), size instanceof Long count ? count : 0L);
+        }
+        return counts;
+    }
+
+    /**
+     * Drops the local filter copies of every group on all instances, after members were restored with
+     * {@link #restoreMember}.
+     */
+    public void membersRestored() {
+        localFilters.invalidateAll();
+        eventBusService.publish(MEMBERS_RESTORED_EVENT, MEMBERS_RESTORED_EVENT, null);
+    }
+
+    /**
+     * Drops the local copy of a group's filter so the next check reloads it from Redis.
+     */
+    public void invalidateLocalFilter(String groupId) {
+        localFilters.invalidate(groupId);
+    }
+
+    private MembershipFilter loadFilter(String groupId) {
+        byte[] bitsKey = getGroupKey(groupId, BLOOM_BITS_KEY_SUFFIX).getBytes(StandardCharsets.UTF_8);
+        byte[] bloomKey = getGroupKey(groupId, BLOOM_KEY_SUFFIX).getBytes(StandardCharsets.UTF_8);
+        List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.stringCommands().mGet(bitsKey, bloomKey));
+
+        byte[] bitsValue = values != null ? values.get(0) : null;
+        long members = countMembers(groupId);
+
+        if (bitsValue == null) {
+            if (members >= largeGroupThreshold) {
+                scheduleBuild(groupId, members);
+            }
+            // Group nhỏ (hoặc filter chưa có): luôn hỏi SISMEMBER
+            return MembershipFilter.PASS_THROUGH;
+        }
+
+        long bits = Long.parseLong(new String(bitsValue, StandardCharsets.UTF_8));
+        if (members * bitsPerMember / 2 > bits && bits < maxBits) {
+            // Filter quá đầy so với số thành viên hiện tại: vẫn dùng được nhưng tỉ lệ false positive tăng
+            scheduleBuild(groupId, members);
+        }
+
+        byte[] bitmap = values.get(1);
+        return new BloomMembershipFilter(bits, bitmap != null ? bitmap : new byte[0], hashes);
+    }
+
+    private void scheduleBuild(String groupId, long members) {
+        if (!buildsInProgress.add(groupId)) {
+            return;
+        }
+        buildExecutor.execute(() -> {
+            try {
+                buildFilter(groupId, members);
+            } catch (Exception e) {
+                log.error("Error building Bloom filter for group {}: {}", groupId, e.getMessage(), e);
+            } finally {
+                buildsInProgress.remove(groupId);
+            }
+        });
+    }
+
+    /**
+     * Builds a new filter into bloom-next while new members keep being written to both filters by the
+     * add script, then swaps it in. The lock key keeps other instances from building at the same time.
+     */
+    private void buildFilter(String groupId, long members) {
+        String lockKey = getGroupKey(groupId, BLOOM_LOCK_KEY_SUFFIX);
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(lockKey, "1", BUILD_LOCK_TTL);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        long bits = Math.min(maxBits, Long.highestOneBit(Math.max(members * bitsPerMember, 1024)) << 1);
+        String nextKey = getGroupKey(groupId, BLOOM_NEXT_KEY_SUFFIX);
+        byte[] rawNextKey = nextKey.getBytes(StandardCharsets.UTF_8);
+
+        redisTemplate.delete(nextKey);
+        redisTemplate.opsForValue().set(getGroupKey(groupId, BLOOM_NEXT_BITS_KEY_SUFFIX), String.valueOf(bits), BUILD_LOCK_TTL);
+
+        long scanned = 0;
+        String cursor = null;
+        do {
+            PageDto<String> page = scanMembers(groupId, cursor, BUILD_SCAN_COUNT);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String userId : page.items()) {
+                    for (long position : bitPositions(userId, hashes)) {
+                        connection.stringCommands().setBit(rawNextKey, position % bits, true);
+                    }
+                }
+                return null;
+            });
+            scanned += page.items().size();
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        redisTemplate.execute(BLOOM_PROMOTE_SCRIPT, List.of(
+                getGroupKey(groupId, BLOOM_KEY_SUFFIX),
+                getGroupKey(groupId, BLOOM_BITS_KEY_SUFFIX),
+                nextKey,
+                getGroupKey(groupId, BLOOM_NEXT_BITS_KEY_SUFFIX),
+                lockKey));
+        localFilters.invalidate(groupId);
+
+        log.info("Built Bloom filter for group {}: {} members, {} bits", groupId, scanned, bits);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+
+    /**
+     * k vị trí bit (31-bit, chưa mod kích thước filter) bằng double hashing trên hash 64-bit của userId.
+     * Script Lua mod các vị trí này theo kích thước filter nên Java và Redis luôn khớp nhau.
+     */
+    static long[] bitPositions(String userId, int hashes) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < userId.length(); i++) {
+            hash ^= userId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        long h1 = mix(hash);
+        long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+
+        long[] positions = new long[hashes];
+        for (int i = 0; i < hashes; i++) {
+            positions[i] = (h1 + i * h2) >>> 33;
+        }
+        return positions;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private interface MembershipFilter {
+
+        MembershipFilter PASS_THROUGH = new MembershipFilter() {
+            @Override
+            public boolean mightContain(String userId) {
+                return true;
+            }
+
+            @Override
+            public void add(String userId) {
+            }
+
+            @Override
+            public int sizeKb() {
+                return 1;
+            }
+        };
+
+        boolean mightContain(String userId);
+
+        void add(String userId);
+
+        int sizeKb();
+    }
+
+    /**
+     * Bản sao bitmap Redis (thứ tự bit như SETBIT: bit 0 là bit cao nhất của byte 0) cộng với các thành
+     * viên được thêm từ chính instance này sau khi load.
+     */
+    private static final class BloomMembershipFilter implements MembershipFilter {
+
+        private final long bits;
+        private final byte[] bitmap;
+        private final int hashes;
+        private final Set<String> addedLocally = ConcurrentHashMap.newKeySet();
+
+        private BloomMembershipFilter(long bits, byte[] bitmap, int hashes) {
+            this.bits = bits;
+            this.bitmap = bitmap;
+            this.hashes = hashes;
+        }
+
+        @Override
+        public boolean mightContain(String userId) {
+            for (long position : bitPositions(userId, hashes)) {
+                long bit = position % bits;
+                int index = (int) (bit >>> 3);
+                if (index >= bitmap.length || (bitmap[index] & (0x80 >>> (bit & 7))) == 0) {
+                    return addedLocally.contains(userId);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void add(String userId) {
+            addedLocally.add(userId);
+        }
+
+        @Override
+        public int sizeKb() {
+            return bitmap.length / 1024 + 1;
+        }
+    }
+}
@@ -1,35 +1,37 @@
 package com.example.mediaservice.service;
 
+import com.example.mediaservice.config.JsonRedisCodec;
+import com.example.mediaservice.config.MetricsConfig;
 import com.example.mediaservice.dto.GroupDto;
 import com.example.mediaservice.entity.Group;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
+@Timed(MetricsConfig.REDIS_SERVICE_TIMER)
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class GroupRedisService {
 
+    // Hash user:{email}:groups -> {groupId: GroupDto}, bản sao để hiển thị danh sách group của user.
+    // Membership (user thuộc group nào) lấy từ set user:group-ids:{uid} của UserGroupRedisService
     private static final String USER_GROUPS_KEY_PREFIX = "user:";
     private static final String USER_GROUPS_KEY_SUFFIX = ":groups";
 
-    // Assuming RedisTemplate is configured for <String, String>
-    // If it's <String, Object>, casting or serializer adjustments might be needed.
     private final RedisTemplate<String, String> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final JsonRedisCodec<GroupDto> groupCodec;
 
     private String getUserGroupsKey(String userEmail) {
-        return USER_GROUPS_KEY_PREFIX + userEmail + USER_GROUPS_KEY_SUFFIX;
+        return USER_GROUPS_KEY_PREFIX + RedisKeys.tag(userEmail) + USER_GROUPS_KEY_SUFFIX;
     }
 
     /**
@@ -50,11 +52,11 @@ public class GroupRedisService {
                     String.valueOf(group.getOwner())
             );
             // Serialize DTO thay vì Avro Object
-            String value = objectMapper.writeValueAsString(groupDto);
+            String value = groupCodec.encode(groupDto);
             HashOperations<String, String, String> hashOps = redisTemplate.opsForHash();
             hashOps.put(key, field, value);
-            log.info("Added/updated group with ID {} for user '{}'", field, userEmail);
-        } catch (JsonProcessingException e) {
+            log.debug("Added/updated group with ID {} for user '{}'", field, userEmail);
+        } catch (SerializationException e) {
             log.error("Error serializing group to JSON for user '{}': {}", userEmail, e.getMessage(), e);
             throw new RuntimeException("Failed to serialize group for Redis", e);
         } catch (Exception e) {
@@ -98,8 +100,8 @@ public class GroupRedisService {
                     .map(json -> {
                         try {
                             // QUAN TRỌNG: Deserialize thẳng ra GroupDto, không dùng Group (Avro) nữa
-                            return objectMapper.readValue(json, GroupDto.class);
-                        } catch (IOException e) {
+                            return groupCodec.decode(json);
+                        } catch (SerializationException e) {
                             log.error("Error deserializing group JSON for user '{}': {}", userEmail, e.getMessage());
                             return null;
                         }
@@ -123,7 +125,7 @@ public class GroupRedisService {
         try {
             HashOperations<String, String, String> hashOps = redisTemplate.opsForHash();
             hashOps.delete(key, groupId);
-            log.info("Deleted group with ID {} for user '{}'", groupId, userEmail);
+            log.debug("Deleted group with ID {} for user '{}'", groupId, userEmail);
         } catch (Exception e) {
             log.error("Error deleting group from Redis for user '{}': {}", userEmail, e.getMessage(), e);
             throw new RuntimeException("Failed to delete group from Redis", e);
@@ -0,0 +1,219 @@
+package com.example.mediaservice.service;
+
+import com.example.mediaservice.dto.GroupDto;
+import com.example.mediaservice.dto.PageDto;
+import com.example.mediaservice.dto.PostDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Home feed đọc trực tiếp từ index thời gian của các group (fan-out khi đọc).
+ * <p>
+ * Mỗi request đọc top-K của mọi group của user trong một pipeline rồi merge k-way bằng heap trong process,
+ * nên chi phí chỉ phụ thuộc số group và kích thước trang. Trang đầu tiên được cache theo user trong vài giây
+ * và bị xóa sớm khi {@link EventBusService} báo có post thay đổi trong một group của user hoặc user vào group mới.
+ */
+@Slf4j
+@Service
+public class HomeFeedService {
+
+    // Đọc thêm để bù các post cùng createdAt với cursor bị lọc bỏ
+    private static final int TIE_OVERFETCH = 32;
+
+    private final PostRedisService postRedisService;
+    private final GroupRedisService groupRedisService;
+    private final UserGroupRedisService userGroupRedisService;
+    private final EventBusService eventBusService;
+    private final Cache<String, FeedHead> headCache;
+    // groupId -> user có trang đầu đang được cache chứa group đó
+    private final Map<String, Set<String>> cachedUsersByGroup = new ConcurrentHashMap<>();
+    private final int headSize;
+
+    public HomeFeedService(PostRedisService postRedisService,
+                           GroupRedisService groupRedisService,
+                           UserGroupRedisService userGroupRedisService,
+                           EventBusService eventBusService,
+                           @Value("${media.home-feed.head-size:100}") int headSize,
+                           @Value("${media.home-feed.cache-ttl:3s}") Duration cacheTtl,
+                           @Value("${media.home-feed.cache-max-size:10000}") long cacheMaxSize) {
+        this.postRedisService = postRedisService;
+        this.groupRedisService = groupRedisService;
+        this.userGroupRedisService = userGroupRedisService;
+        this.eventBusService = eventBusService;
+        this.headSize = headSize;
+        this.headCache = Caffeine.newBuilder()
+                .expireAfterWrite(cacheTtl)
+                .maximumSize(cacheMaxSize)
+                .<String, FeedHead>removalListener((userEmail, head, cause) -> {
+                    if (userEmail != null && head != null) {
+                        head.groupIds().forEach(groupId -> removeCachedUser(groupId, userEmail));
+                    }
+                })
+                .build();
+    }
+
+    @PostConstruct
+    public void start() {
+        eventBusService.addListener(event -> {
+            if (event.type().startsWith("post-") && event.topic().startsWith(PushService.GROUP_TOPIC_PREFIX)) {
+                String groupId = event.topic().substring(PushService.GROUP_TOPIC_PREFIX.length());
+                Set<String> users = cachedUsersByGroup.get(groupId);
+                if (users != null) {
+                    headCache.invalidateAll(Set.copyOf(users));
+                }
+            } else if (GroupMembershipService.MEMBER_ADDED_EVENT.equals(event.type()) && event.data() != null) {
+                invalidate(event.data().path("userId").asText());
+            }
+        });
+    }
+
+    /**
+     * Reads one page of the user's home feed, newest first.
+     *
+     * @param cursor The cursor returned by the previous page ("createdAt:postId"), or null for the first page.
+     * @param limit  Page size.
+     * @return The posts of this page and the cursor of the next one (null when there are no more posts).
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public PageDto<PostDto> getHomeFeed(String userEmail, String cursor, int limit) {
+        FeedCursor after = FeedCursor.parse(cursor);
+        try {
+            List<FeedEntry> page;
+            if (after == FeedCursor.START && limit <= headSize) {
+                List<FeedEntry> head = headCache.get(userEmail, this::loadHead).entries();
+                page = head.subList(0, Math.min(limit, head.size()));
+            } else {
+                page = mergeGroupIndexes(getGroupIds(userEmail), after, limit);
+            }
+
+            Map<String, PostDto> posts = postRedisService.getPostsByIds(FeedEntry.postIdsByGroup(page));
+            List<PostDto> items = page.stream()
+                    .map(entry -> posts.get(entry.postId()))
+                    .filter(Objects::nonNull)
+                    .toList();
+
+            String nextCursor = page.size() < limit ? null : page.get(page.size() - 1).toCursor();
+            return new PageDto<>(items, nextCursor);
+        } catch (Exception e) {
+            log.error("Error retrieving home feed of user '{}' from Redis: {}", userEmail, e.getMessage(), e);
+            throw new RuntimeException("Failed to retrieve home feed from Redis", e);
+        }
+    }
+
+    /**
+     * Drops the cached first page of a user's feed.
+     */
+    public void invalidate(String userEmail) {
+        headCache.invalidate(userEmail);
+    }
+
+    private FeedHead loadHead(String userEmail) {
+        Set<String> groupIds = getGroupIds(userEmail);
+        groupIds.forEach(groupId -> cachedUsersByGroup
+                .computeIfAbsent(groupId, key -> ConcurrentHashMap.newKeySet())
+                .add(userEmail));
+        return new FeedHead(mergeGroupIndexes(groupIds, FeedCursor.START, headSize), groupIds);
+    }
+
+    private void removeCachedUser(String groupId, String userEmail) {
+        cachedUsersByGroup.computeIfPresent(groupId, (key, users) -> {
+            users.remove(userEmail);
+            return users.isEmpty() ? null : users;
+        });
+    }
+
+    private Set<String> getGroupIds(String userEmail) {
+        Set<String> groupIds = new LinkedHashSet<>();
+        groupRedisService.getGroupsByUser(userEmail).stream()
+                .map(GroupDto::id)
+                .forEach(groupIds::add);
+        groupIds.addAll(userGroupRedisService.getUserGroupIds(userEmail));
+        return groupIds;
+    }
+
+    private List<FeedEntry> mergeGroupIndexes(Set<String> groupIds, FeedCursor after, int limit) {
+        if (groupIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, List<ZSetOperations.TypedTuple<String>>> indexes =
+                postRedisService.getLatestPostIds(groupIds, after.maxScore(), limit + TIE_OVERFETCH);
+
+        // Mỗi index đã sắp xếp mới nhất trước (ZREVRANGEBYSCORE), heap giữ phần tử đầu của từng index
+        PriorityQueue<GroupIndexCursor> heap = new PriorityQueue<>(
+                Comparator.comparing(GroupIndexCursor::current, FeedEntry.NEWEST_FIRST));
+        indexes.forEach((groupId, tuples) -> {
+            GroupIndexCursor indexCursor = new GroupIndexCursor(groupId, tuples);
+            if (indexCursor.hasCurrent()) {
+                heap.add(indexCursor);
+            }
+        });
+
+        List<FeedEntry> merged = new ArrayList<>(limit);
+        while (merged.size() < limit && !heap.isEmpty()) {
+            GroupIndexCursor indexCursor = heap.poll();
+            FeedEntry entry = indexCursor.current();
+            if (after.isBefore(entry)) {
+                merged.add(entry);
+            }
+            indexCursor.advance();
+            if (indexCursor.hasCurrent()) {
+                heap.add(indexCursor);
+            }
+        }
+
+        log.debug("Merged {} posts from {} groups", merged.size(), groupIds.size());
+        return merged;
+    }
+
+    private record FeedHead(List<FeedEntry> entries, Set<String> groupIds) {
+    }
+
+    private static final class GroupIndexCursor {
+
+        private final String groupId;
+        private final List<ZSetOperations.TypedTuple<String>> tuples;
+        private int position = -1;
+        private FeedEntry current;
+
+        private GroupIndexCursor(String groupId, List<ZSetOperations.TypedTuple<String>> tuples) {
+            this.groupId = groupId;
+            this.tuples = tuples;
+            advance();
+        }
+
+        boolean hasCurrent() {
+            return current != null;
+        }
+
+        FeedEntry current() {
+            return current;
+        }
+
+        void advance() {
+            position++;
+            if (position < tuples.size()) {
+                ZSetOperations.TypedTuple<String> tuple = tuples.get(position);
+                current = new FeedEntry(groupId, tuple.getValue(), tuple.getScore().longValue());
+            } else {
+                current = null;
+            }
+        }
+    }
+}
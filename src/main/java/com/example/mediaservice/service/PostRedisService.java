@@ -1,20 +1,35 @@
 package com.example.mediaservice.service;
 
+import com.example.mediaservice.config.JsonRedisCodec;
+import com.example.mediaservice.config.MetricsConfig;
+import com.example.mediaservice.dto.FeedChangesDto;
 import com.example.mediaservice.dto.PostDto;
 import com.example.mediaservice.dto.UserDto;
 import com.example.mediaservice.entity.Post;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+@Timed(MetricsConfig.REDIS_SERVICE_TIMER)
 @Slf4j
 @RequiredArgsConstructor
 @Service
@@ -22,24 +37,34 @@ public class PostRedisService {
 
     private static final String GROUP_POSTS_KEY_PREFIX = "group:";
     private static final String GROUP_POSTS_KEY_SUFFIX = ":posts";
+    // Index theo thời gian: group:{groupId}:posts:index -> zset {postId: createdAt}
+    private static final String GROUP_POSTS_INDEX_KEY_SUFFIX = ":posts:index";
     private static final String CHANNEL_POSTS_KEY_PREFIX = "channel:";
     private static final String CHANNEL_POSTS_KEY_SUFFIX = ":posts";
+    private static final int SCAN_COUNT = 500;
 
     private final RedisTemplate<String, String> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final JsonRedisCodec<PostDto> postCodec;
+    private final FeedChangeService feedChangeService;
 
     private String getGroupPostsKey(String groupId) {
-        return GROUP_POSTS_KEY_PREFIX + groupId + GROUP_POSTS_KEY_SUFFIX;
+        return GROUP_POSTS_KEY_PREFIX + RedisKeys.tag(groupId) + GROUP_POSTS_KEY_SUFFIX;
+    }
+
+    private String getGroupPostsIndexKey(String groupId) {
+        return GROUP_POSTS_KEY_PREFIX + RedisKeys.tag(groupId) + GROUP_POSTS_INDEX_KEY_SUFFIX;
     }
 
     private String getChannelPostsKey(String channelId) {
-        return CHANNEL_POSTS_KEY_PREFIX + channelId + CHANNEL_POSTS_KEY_SUFFIX;
+        return CHANNEL_POSTS_KEY_PREFIX + RedisKeys.tag(channelId) + CHANNEL_POSTS_KEY_SUFFIX;
     }
 
     /**
-     * Adds or updates a post in a group
+     * Adds or updates a post in a group and its time index
+     *
+     * @return The stored post.
      */
-    public void addPostToGroup(String groupId, Post post) {
+    public PostDto addPostToGroup(String groupId, Post post) {
         String key = getGroupPostsKey(groupId);
         String field = String.valueOf(post.getId());
 
@@ -60,13 +85,17 @@ public class PostRedisService {
                     post.getChannelId() != null ? String.valueOf(post.getChannelId()) : null,
                     userDto,
                     String.valueOf(post.getContent()),
-                    post.getLikes()
+                    post.getLikes(),
+                    getPostTimestamp(String.valueOf(post.getGroupId()), post)
             );
 
-            String jsonValue = objectMapper.writeValueAsString(postDto);
+            String jsonValue = postCodec.encode(postDto);
             redisTemplate.opsForHash().put(key, field, jsonValue);
-            log.info("Added post {} to group {} in Redis", post.getId(), groupId);
-        } catch (JsonProcessingException e) {
+            redisTemplate.opsForZSet().add(getGroupPostsIndexKey(groupId), field, postDto.createdAt());
+            feedChangeService.recordChange(key, field);
+            log.debug("Added post {} to group {} in Redis", post.getId(), groupId);
+            return postDto;
+        } catch (SerializationException e) {
             log.error("Failed to serialize post: {}", e.getMessage(), e);
             throw new RuntimeException("Error serializing post", e);
         }
@@ -99,14 +128,15 @@ public class PostRedisService {
                     String.valueOf(post.getChannelId()),
                     userDto,
                     String.valueOf(post.getContent()),
-                    post.getLikes()
-
+                    post.getLikes(),
+                    getPostTimestamp(String.valueOf(post.getGroupId()), post)
             );
 
-            String jsonValue = objectMapper.writeValueAsString(postDto);
+            String jsonValue = postCodec.encode(postDto);
             redisTemplate.opsForHash().put(key, field, jsonValue);
-            log.info("Added post {} to channel {} in Redis", post.getId(), channelId);
-        } catch (JsonProcessingException e) {
+            feedChangeService.recordChange(key, field);
+            log.debug("Added post {} to channel {} in Redis", post.getId(), channelId);
+        } catch (SerializationException e) {
             log.error("Failed to serialize post: {}", e.getMessage(), e);
             throw new RuntimeException("Error serializing post", e);
         }
@@ -118,7 +148,9 @@ public class PostRedisService {
     public void removePostFromGroup(String groupId, String postId) {
         String key = getGroupPostsKey(groupId);
         redisTemplate.opsForHash().delete(key, postId);
-        log.info("Removed post {} from group {} in Redis", postId, groupId);
+        redisTemplate.opsForZSet().remove(getGroupPostsIndexKey(groupId), postId);
+        feedChangeService.recordChange(key, postId);
+        log.debug("Removed post {} from group {} in Redis", postId, groupId);
     }
 
     /**
@@ -131,7 +163,36 @@ public class PostRedisService {
 
         String key = getChannelPostsKey(channelId);
         redisTemplate.opsForHash().delete(key, postId);
-        log.info("Removed post {} from channel {} in Redis", postId, channelId);
+        feedChangeService.recordChange(key, postId);
+        log.debug("Removed post {} from channel {} in Redis", postId, channelId);
+    }
+
+    /**
+     * Returns the ETag of a group's feed, changed on every post change, see {@link FeedChangeService#getETag}
+     */
+    public String getGroupPostsETag(String groupId) {
+        return feedChangeService.getETag(getGroupPostsKey(groupId));
+    }
+
+    /**
+     * Returns the ETag of a channel's feed, changed on every post change, see {@link FeedChangeService#getETag}
+     */
+    public String getChannelPostsETag(String channelId) {
+        return feedChangeService.getETag(getChannelPostsKey(channelId));
+    }
+
+    /**
+     * Returns the posts of a group changed after a version; deleted posts are returned as ids only
+     */
+    public FeedChangesDto<PostDto> getGroupPostChanges(String groupId, String since, int limit) {
+        return getChanges(getGroupPostsKey(groupId), since, limit);
+    }
+
+    /**
+     * Returns the posts of a channel changed after a version; deleted posts are returned as ids only
+     */
+    public FeedChangesDto<PostDto> getChannelPostChanges(String channelId, String since, int limit) {
+        return getChanges(getChannelPostsKey(channelId), since, limit);
     }
 
     /**
@@ -139,10 +200,9 @@ public class PostRedisService {
      */
     public List<PostDto> getPostsByGroup(String groupId) {
         String key = getGroupPostsKey(groupId);
-        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+        List<String> values = redisTemplate.<String, String>opsForHash().values(key);
 
-        return entries.values().stream()
-                .map(Object::toString)
+        return values.stream()
                 .map(this::deserializePost)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
@@ -153,33 +213,202 @@ public class PostRedisService {
      */
     public List<PostDto> getPostsByChannel(String channelId) {
         String key = getChannelPostsKey(channelId);
-        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+        List<String> values = redisTemplate.<String, String>opsForHash().values(key);
 
-        return entries.values().stream()
-                .map(Object::toString)
+        return values.stream()
                 .map(this::deserializePost)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Streams the posts of a group with HSCAN, handing each decoded post to the consumer instead of
+     * building the whole list. Posts changed during the scan may be returned twice or not at all.
+     */
+    public void forEachPostInGroup(String groupId, Consumer<PostDto> consumer) {
+        scanPosts(getGroupPostsKey(groupId), consumer);
+    }
+
+    /**
+     * Streams the posts of a channel with HSCAN, see {@link #forEachPostInGroup}
+     */
+    public void forEachPostInChannel(String channelId, Consumer<PostDto> consumer) {
+        scanPosts(getChannelPostsKey(channelId), consumer);
+    }
+
+    /**
+     * Calls consumer with the id of every group that has a post time index, walking the keys with SCAN.
+     */
+    public void forEachIndexedGroup(Consumer<String> consumer) {
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(GROUP_POSTS_KEY_PREFIX + "*" + GROUP_POSTS_INDEX_KEY_SUFFIX)
+                .count(SCAN_COUNT)
+                .build();
+        try (Cursor<String> keys = redisTemplate.scan(options)) {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                // group:{gid}:posts:index -> gid
+                String tagged = key.substring(GROUP_POSTS_KEY_PREFIX.length(), key.length() - GROUP_POSTS_INDEX_KEY_SUFFIX.length());
+                consumer.accept(tagged.substring(1, tagged.length() - 1));
+            }
+        }
+    }
+
     /**
      * Retrieves a specific post by ID from group
      */
     public PostDto getPostById(String groupId, String postId) {
         String key = getGroupPostsKey(groupId);
-        Object value = redisTemplate.opsForHash().get(key, postId);
+        String value = redisTemplate.<String, String>opsForHash().get(key, postId);
 
         if (value == null) {
             log.warn("Post {} not found in group {}", postId, groupId);
             return null;
         }
 
-        return deserializePost(value.toString());
+        return deserializePost(value);
+    }
+
+    /**
+     * Reads the newest post ids of several groups from their time index in one pipeline.
+     *
+     * @param groupIds The groups to read.
+     * @param maxScore Only posts created at or before this timestamp are returned.
+     * @param limit    Maximum number of ids per group.
+     * @return For each group, its post ids with createdAt as score, newest first.
+     */
+    public Map<String, List<ZSetOperations.TypedTuple<String>>> getLatestPostIds(Collection<String> groupIds,
+                                                                               double maxScore, int limit) {
+        List<String> groups = new ArrayList<>(groupIds);
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String groupId : groups) {
+                byte[] indexKey = getGroupPostsIndexKey(groupId).getBytes(StandardCharsets.UTF_8);
+                connection.zSetCommands().zRevRangeByScoreWithScores(indexKey, 0, maxScore, 0, limit);
+            }
+            return null;
+        });
+
+        Map<String, List<ZSetOperations.TypedTuple<String>>> result = new LinkedHashMap<>();
+        for (int i = 0; i < groups.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Set<ZSetOperations.TypedTuple<String>> ids = (Set<ZSetOperations.TypedTuple<String>>) replies.get(i);
+            result.put(groups.get(i), ids != null ? new ArrayList<>(ids) : List.of());
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves posts from several groups with one HMGET per group, all in one pipeline.
+     *
+     * @param postIdsByGroup Post ids to read, keyed by group id.
+     * @return Found posts keyed by post id; missing posts are left out.
+     */
+    public Map<String, PostDto> getPostsByIds(Map<String, List<String>> postIdsByGroup) {
+        List<Map.Entry<String, List<String>>> entries = new ArrayList<>(postIdsByGroup.entrySet());
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, List<String>> entry : entries) {
+                byte[] key = getGroupPostsKey(entry.getKey()).getBytes(StandardCharsets.UTF_8);
+                byte[][] fields = entry.getValue().stream()
+                        .map(postId -> postId.getBytes(StandardCharsets.UTF_8))
+                        .toArray(byte[][]::new);
+                connection.hashCommands().hMGet(key, fields);
+            }
+            return null;
+        });
+
+        Map<String, PostDto> posts = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            @SuppressWarnings("unchecked")
+            List<String> values = (List<String>) replies.get(i);
+            List<String> postIds = entries.get(i).getValue();
+            for (int j = 0; values != null && j < values.size(); j++) {
+                PostDto post = values.get(j) != null ? deserializePost(values.get(j)) : null;
+                if (post != null) {
+                    posts.put(postIds.get(j), post);
+                }
+            }
+        }
+        return posts;
+    }
+
+    /**
+     * Reads the indexed createdAt of posts from several groups with one ZMSCORE per group, all in one pipeline.
+     * Used by callers that write inside a pipeline, where the lookup of {@link #addPostToGroup} reads nothing.
+     *
+     * @param postIdsByGroup Post ids to read, keyed by group id.
+     * @return createdAt keyed by post id; posts not in their group's index are left out.
+     */
+    public Map<String, Long> getIndexedCreatedAt(Map<String, List<String>> postIdsByGroup) {
+        List<Map.Entry<String, List<String>>> entries = new ArrayList<>(postIdsByGroup.entrySet());
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, List<String>> entry : entries) {
+                byte[] indexKey = getGroupPostsIndexKey(entry.getKey()).getBytes(StandardCharsets.UTF_8);
+                byte[][] members = entry.getValue().stream()
+                        .map(postId -> postId.getBytes(StandardCharsets.UTF_8))
+                        .toArray(byte[][]::new);
+                connection.zSetCommands().zMScore(indexKey, members);
+            }
+            return null;
+        });
+
+        Map<String, Long> createdAt = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            @SuppressWarnings("unchecked")
+            List<Double> scores = (List<Double>) replies.get(i);
+            List<String> postIds = entries.get(i).getValue();
+            for (int j = 0; scores != null && j < scores.size(); j++) {
+                if (scores.get(j) != null) {
+                    createdAt.put(postIds.get(j), scores.get(j).longValue());
+                }
+            }
+        }
+        return createdAt;
+    }
+
+    // Event không có createdAt (mặc định 0, vd. update cũ): giữ thời điểm đã index, nếu chưa có thì dùng thời điểm consume
+    private long getPostTimestamp(String groupId, Post post) {
+        if (post.getCreatedAt() > 0) {
+            return post.getCreatedAt();
+        }
+        Double indexed = redisTemplate.opsForZSet().score(getGroupPostsIndexKey(groupId), String.valueOf(post.getId()));
+        return indexed != null ? indexed.longValue() : System.currentTimeMillis();
+    }
+
+    private void scanPosts(String key, Consumer<PostDto> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().count(SCAN_COUNT).build();
+        try (Cursor<Map.Entry<String, String>> cursor = redisTemplate.<String, String>opsForHash().scan(key, options)) {
+            while (cursor.hasNext()) {
+                PostDto post = deserializePost(cursor.next().getValue());
+                if (post != null) {
+                    consumer.accept(post);
+                }
+            }
+        }
+    }
+
+    // Id có trong change log nhưng không còn trong hash là post đã bị xóa
+    private FeedChangesDto<PostDto> getChanges(String feedKey, String since, int limit) {
+        FeedChangeService.ChangeSet changeSet = feedChangeService.getChanges(feedKey, since, limit);
+        List<PostDto> changed = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+
+        if (!changeSet.ids().isEmpty()) {
+            List<String> values = redisTemplate.<String, String>opsForHash().multiGet(feedKey, changeSet.ids());
+            for (int i = 0; i < changeSet.ids().size(); i++) {
+                PostDto post = values.get(i) != null ? deserializePost(values.get(i)) : null;
+                if (post != null) {
+                    changed.add(post);
+                } else {
+                    deleted.add(changeSet.ids().get(i));
+                }
+            }
+        }
+        return new FeedChangesDto<>(changeSet.epoch(), changeSet.version(), changed, deleted, changeSet.hasMore(), changeSet.resyncRequired());
     }
 
     private PostDto deserializePost(String json) {
         try {
-            return objectMapper.readValue(json, PostDto.class);
+            return postCodec.decode(json);
         } catch (Exception e) {
             log.error("Failed to deserialize post: {}", e.getMessage(), e);
             return null;
@@ -0,0 +1,208 @@
+package com.example.mediaservice.service;
+
+import com.example.mediaservice.dto.FeedEventDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Đẩy post/comment mới tới client qua SSE.
+ * <p>
+ * Consumer Kafka gọi {@link #publish} sau khi ghi Redis; sự kiện được phát qua {@link EventBusService} để mọi
+ * instance nhận được và gửi tới các client đang kết nối vào chính nó.
+ * <p>
+ * Thread của bus chỉ đưa sự kiện vào hàng đợi của từng client (tối đa media.push.max-pending sự kiện); việc ghi
+ * ra socket chạy trên virtual thread, mỗi client một luồng gửi tuần tự. Client đọc chậm tới mức đầy hàng đợi
+ * bị ngắt kết nối, để một client chậm không chặn các client khác hay các listener khác của bus.
+ */
+@Slf4j
+@Service
+public class PushService {
+
+    public static final String GROUP_TOPIC_PREFIX = "group:";
+    public static final String CHANNEL_TOPIC_PREFIX = "channel:";
+    public static final String POST_TOPIC_PREFIX = "post:";
+    public static final String COMMENT_TOPIC_PREFIX = "comment:";
+
+    // Bus còn chở sự kiện nội bộ (vd. invalidation), chỉ các loại này được gửi tới client
+    private static final Set<String> PUSH_EVENT_TYPES = Set.of(
+            "post-created", "post-updated", "post-deleted",
+            "comment-created", "comment-updated", "comment-deleted");
+
+    private final EventBusService eventBusService;
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService sendExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sse-send-", 0).factory());
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sse-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${media.push.emitter-timeout:30m}")
+    private Duration emitterTimeout;
+
+    @Value("${media.push.heartbeat-interval:25s}")
+    private Duration heartbeatInterval;
+
+    @Value("${media.push.max-pending:256}")
+    private int maxPending;
+
+    public PushService(EventBusService eventBusService) {
+        this.eventBusService = eventBusService;
+    }
+
+    @PostConstruct
+    public void start() {
+        eventBusService.addListener(event -> {
+            if (PUSH_EVENT_TYPES.contains(event.type())) {
+                deliver(event.type(), event.topic(), event.data());
+            }
+        });
+        // Comment SSE định kỳ để proxy/load balancer không cắt kết nối đang rảnh
+        heartbeatExecutor.scheduleAtFixedRate(this::sendHeartbeats,
+                heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatExecutor.shutdownNow();
+        subscribers.values().stream()
+                .flatMap(Collection::stream)
+                .distinct()
+                .forEach(subscriber -> subscriber.emitter.complete());
+        sendExecutor.shutdownNow();
+    }
+
+    /**
+     * Opens an SSE stream receiving the events of the given topics (group:{id}, channel:{id}, post:{id},
+     * comment:{id}).
+     */
+    public SseEmitter subscribe(Collection<String> topics) {
+        SseEmitter emitter = new SseEmitter(emitterTimeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, topics, maxPending);
+        for (String topic : topics) {
+            subscribers.computeIfAbsent(topic, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+
+        log.info("SSE subscriber connected to {} topics", topics.size());
+        return emitter;
+    }
+
+    /**
+     * Publishes an event to the subscribers of its topic on every instance.
+     * Failures are logged only: push is best effort and must not fail the Kafka consumer.
+     */
+    public void publish(String type, String topic, Object data) {
+        eventBusService.publish(type, topic, data);
+    }
+
+    /**
+     * Queues an event for the emitters connected to this instance, without waiting for the sends.
+     */
+    void deliver(String type, String topic, JsonNode data) {
+        Set<Subscriber> topicSubscribers = subscribers.get(topic);
+        if (topicSubscribers == null || topicSubscribers.isEmpty()) {
+            return;
+        }
+
+        // build() không gọi lại được trên cùng builder: dựng nội dung một lần cho mọi client
+        Set<ResponseBodyEmitter.DataWithMediaType> event = SseEmitter.event()
+                .name(type)
+                .data(new FeedEventDto(type, topic, data), MediaType.APPLICATION_JSON)
+                .build();
+        for (Subscriber subscriber : topicSubscribers) {
+            enqueue(subscriber, event);
+        }
+    }
+
+    private void sendHeartbeats() {
+        // Một emitter có thể subscribe nhiều topic, chỉ gửi heartbeat một lần
+        subscribers.values().stream()
+                .flatMap(Collection::stream)
+                .distinct()
+                .forEach(subscriber -> enqueue(subscriber, SseEmitter.event().comment("heartbeat").build()));
+    }
+
+    private void enqueue(Subscriber subscriber, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        if (!subscriber.pending.offer(event)) {
+            log.warn("SSE subscriber fell behind by {} events, disconnecting it", maxPending);
+            unsubscribe(subscriber);
+            subscriber.emitter.completeWithError(new IllegalStateException("SSE subscriber too slow"));
+            return;
+        }
+        if (subscriber.sending.compareAndSet(false, true)) {
+            sendExecutor.execute(() -> drain(subscriber));
+        }
+    }
+
+    // Chỉ một luồng gửi cho mỗi subscriber để giữ thứ tự sự kiện
+    private void drain(Subscriber subscriber) {
+        do {
+            Set<ResponseBodyEmitter.DataWithMediaType> event;
+            while ((event = subscriber.pending.poll()) != null) {
+                try {
+                    subscriber.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // Client đã ngắt kết nối
+                    unsubscribe(subscriber);
+                    subscriber.emitter.completeWithError(e);
+                    subscriber.pending.clear();
+                    return;
+                }
+            }
+            subscriber.sending.set(false);
+            // Sự kiện được thêm sau lần poll cuối nhưng trước khi bỏ cờ: tiếp tục gửi nếu chưa có luồng khác nhận
+        } while (!subscriber.pending.isEmpty() && subscriber.sending.compareAndSet(false, true));
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        for (String topic : subscriber.topics) {
+            subscribers.computeIfPresent(topic, (key, topicSubscribers) -> {
+                topicSubscribers.remove(subscriber);
+                return topicSubscribers.isEmpty() ? null : topicSubscribers;
+            });
+        }
+    }
+
+    /**
+     * Một client SSE và các sự kiện chờ gửi tới nó
+     */
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Collection<String> topics;
+        private final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> pending;
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter, Collection<String> topics, int maxPending) {
+            this.emitter = emitter;
+            this.topics = topics;
+            this.pending = new ArrayBlockingQueue<>(maxPending);
+        }
+    }
+}
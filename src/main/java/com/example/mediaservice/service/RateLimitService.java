@@ -0,0 +1,183 @@
+package com.example.mediaservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Giới hạn tốc độ request bằng token bucket.
+ * <p>
+ * Mỗi bucket có dung lượng (burst) và tốc độ nạp lại (token/giây), key theo user (email trong JWT) hoặc group.
+ * Chế độ local giữ bucket trong bộ nhớ của instance (giới hạn thực tế nhân với số instance); chế độ redis chạy
+ * scripts/rate-limit.lua nên mọi instance dùng chung một bucket. Lỗi Redis không chặn request (fail open).
+ */
+@Slf4j
+@Service
+public class RateLimitService {
+
+    private static final String KEY_PREFIX = "ratelimit:";
+    private static final String REJECTED_COUNTER = "media.rate-limit.rejected";
+
+    private static final RedisScript<List> RATE_LIMIT_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/rate-limit.lua"), List.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, TokenBucket> localBuckets;
+    private final boolean enabled;
+    private final boolean distributed;
+    private final Limit writeLimit;
+    private final Limit readLimit;
+    private final Limit groupWriteLimit;
+
+    public RateLimitService(RedisTemplate<String, String> redisTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${media.rate-limit.enabled:true}") boolean enabled,
+                            @Value("${media.rate-limit.mode:local}") String mode,
+                            @Value("${media.rate-limit.local-max-buckets:100000}") long localMaxBuckets,
+                            @Value("${media.rate-limit.write.capacity:20}") long writeCapacity,
+                            @Value("${media.rate-limit.write.refill-per-second:5}") double writeRefill,
+                            @Value("${media.rate-limit.read.capacity:100}") long readCapacity,
+                            @Value("${media.rate-limit.read.refill-per-second:30}") double readRefill,
+                            @Value("${media.rate-limit.group-write.capacity:200}") long groupWriteCapacity,
+                            @Value("${media.rate-limit.group-write.refill-per-second:50}") double groupWriteRefill) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.distributed = "redis".equalsIgnoreCase(mode);
+        this.writeLimit = new Limit("write", writeCapacity, writeRefill);
+        this.readLimit = new Limit("read", readCapacity, readRefill);
+        this.groupWriteLimit = new Limit("group-write", groupWriteCapacity, groupWriteRefill);
+        // Bucket không dùng tới quá thời gian nạp đầy thì bỏ đi, tạo lại sẽ đầy như cũ
+        this.localBuckets = Caffeine.newBuilder()
+                .maximumSize(localMaxBuckets)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+
+    /**
+     * Một loại giới hạn
+     * @param name            tên, dùng trong key và metric
+     * @param capacity        số request tối đa trong một burst
+     * @param refillPerSecond số request được nạp lại mỗi giây
+     */
+    public record Limit(String name, long capacity, double refillPerSecond) {
+    }
+
+    /**
+     * Kết quả của một lần xin token
+     * @param allowed          request được phép
+     * @param retryAfterMillis thời gian phải chờ trước khi thử lại, 0 nếu được phép
+     */
+    public record Decision(boolean allowed, long retryAfterMillis) {
+
+        /**
+         * Retry-After header value, rounded up to whole seconds.
+         */
+        public long retryAfterSeconds() {
+            return Math.max(1, (retryAfterMillis + 999) / 1000);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Limit writeLimit() {
+        return writeLimit;
+    }
+
+    public Limit readLimit() {
+        return readLimit;
+    }
+
+    /**
+     * Returns who a request is limited as: user:{email} of the JWT, or ip:{address} for anonymous requests.
+     */
+    public static String subjectOf(String email, String remoteAddr) {
+        return email != null ? "user:" + email : "ip:" + remoteAddr;
+    }
+
+    /**
+     * Takes a token from the write bucket of a subject (see {@link #subjectOf}), the bucket RateLimitFilter
+     * charges once per request.
+     */
+    public Decision acquireWrite(String subject) {
+        return acquire(writeLimit, subject);
+    }
+
+    /**
+     * Takes a token from the post write bucket of a group.
+     */
+    public Decision acquireGroupWrite(String groupId) {
+        return acquire(groupWriteLimit, "group:" + groupId);
+    }
+
+    /**
+     * Takes a token from a bucket.
+     *
+     * @param limit   The kind of limit.
+     * @param subject Who is limited, e.g. user:{email} or group:{id}.
+     */
+    public Decision acquire(Limit limit, String subject) {
+        if (!enabled) {
+            return new Decision(true, 0);
+        }
+        String key = KEY_PREFIX + limit.name() + ":" + subject;
+        Decision decision = distributed ? acquireRedis(limit, key) : acquireLocal(limit, key);
+        if (!decision.allowed()) {
+            meterRegistry.counter(REJECTED_COUNTER, "limit", limit.name()).increment();
+        }
+        return decision;
+    }
+
+    private Decision acquireLocal(Limit limit, String key) {
+        return localBuckets.get(key, ignored -> new TokenBucket(limit.capacity())).tryAcquire(limit);
+    }
+
+    private Decision acquireRedis(Limit limit, String key) {
+        try {
+            List<?> result = redisTemplate.execute(RATE_LIMIT_SCRIPT, List.of(key),
+                    String.valueOf(limit.capacity()), String.valueOf(limit.refillPerSecond()), "1");
+            if (result == null || result.size() < 2) {
+                return new Decision(true, 0);
+            }
+            boolean allowed = ((Number) result.get(0)).longValue() == 1;
+            return new Decision(allowed, ((Number) result.get(1)).longValue());
+        } catch (Exception e) {
+            log.warn("Error checking rate limit {}, allowing request: {}", key, e.getMessage());
+            return new Decision(true, 0);
+        }
+    }
+
+    private static final class TokenBucket {
+
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        private TokenBucket(long capacity) {
+            this.tokens = capacity;
+        }
+
+        synchronized Decision tryAcquire(Limit limit) {
+            long now = System.nanoTime();
+            tokens = Math.min(limit.capacity(), tokens + (now - lastRefillNanos) / 1e9 * limit.refillPerSecond());
+            lastRefillNanos = now;
+
+            if (tokens >= 1) {
+                tokens -= 1;
+                return new Decision(true, 0);
+            }
+            return new Decision(false, (long) Math.ceil((1 - tokens) * 1000 / limit.refillPerSecond()));
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.example.mediaservice.service;
+
+import com.example.mediaservice.dto.PostDto;
+import com.example.mediaservice.dto.RebuildStatusDto;
+import com.example.mediaservice.entity.Channel;
+import com.example.mediaservice.entity.Comment;
+import com.example.mediaservice.entity.Group;
+import com.example.mediaservice.entity.Post;
+import com.example.mediaservice.entity.User;
+import com.example.mediaservice.entity.relationship.UserChannel;
+import com.example.mediaservice.entity.relationship.UserGroup;
+import com.example.mediaservice.producer.StateProducerService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RecordDeserializationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dựng lại read model trong Redis từ đầu các topic Kafka, dùng khi Redis bị flush hoặc mất dữ liệu.
+ * <p>
+ * Một consumer riêng (không commit offset, không ảnh hưởng các listener) đọc từng phase topic từ offset đầu
+ * đến end offset lúc bắt đầu phase, với fetch lớn. Mỗi lần poll được ghi bằng các hàm ghi sẵn có của các
+ * Redis service, chạy trong một pipeline. Các phase chạy theo thứ tự created → updated → deleted để bản ghi
+ * cũ không ghi đè bản mới khi đọc nhiều topic song song.
+ * <p>
+ * Có hai chế độ: replay đọc toàn bộ lịch sử event (và ghi lại post-state/comment-state), snapshot chỉ đọc
+ * các topic compacted post-state/comment-state thay cho lịch sử post/comment. Khi khởi động mà Redis chưa có
+ * marker readmodel:hydrated (Redis mới hoặc vừa bị flush), snapshot chỉ được dùng nếu đã có một lần replay
+ * hoàn tất ghi đầy đủ các topic state (marker trên topic state-seeded), nếu chưa thì chạy replay.
+ * <p>
+ * Trong lúc rebuild, các @KafkaListener của instance này bị pause để record cũ trong lịch sử không ghi đè giá
+ * trị mới vừa được listener ghi; listener tiếp tục từ offset đã commit khi rebuild xong. Listener của các
+ * instance khác không bị pause, nên khi chạy nhiều instance cần rebuild lúc các instance cùng khởi động lại.
+ * <p>
+ * Thành viên group được nạp không kèm event group-member-added trên bus; cuối cùng timeline của user được dựng
+ * lại từ index thời gian của các group (phase timelines).
+ */
+@Slf4j
+@Service
+public class ReadModelRebuildService {
+
+    private static final List<List<String>> PHASES = List.of(
+            List.of("user-create", "group-created", "channel-created",
+                    "user-group-create", "user-group-join", "user-channel-events"),
+            List.of("user-update", "group-updated", "channel-updated"),
+            List.of("post-created", "comment-created"),
+            List.of("post-updated", "comment-updated"),
+            List.of("post-deleted", "comment-deleted"));
+
+    private static final List<List<String>> SNAPSHOT_PHASES = List.of(
+            PHASES.get(0),
+            PHASES.get(1),
+            List.of(StateProducerService.POST_STATE_TOPIC, StateProducerService.COMMENT_STATE_TOPIC));
+
+    private static final String HYDRATED_KEY = "readmodel:hydrated";
+    private static final String REPLAY_MODE = "replay";
+    private static final String SNAPSHOT_MODE = "snapshot";
+    private static final String TIMELINES_PHASE = "timelines";
+
+    private final ConsumerFactory<Object, Object> consumerFactory;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final UserRedisService userRedisService;
+    private final GroupRedisService groupRedisService;
+    private final ChannelRedisService channelRedisService;
+    private final UserGroupRedisService userGroupRedisService;
+    private final UserChannelRedisService userChannelRedisService;
+    private final PostRedisService postRedisService;
+    private final CommentRedisService commentRedisService;
+    private final GroupMembershipService groupMembershipService;
+    private final TimelineRedisService timelineRedisService;
+    private final StateProducerService stateProducerService;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "read-model-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong recordsApplied = new AtomicLong();
+    private final AtomicLong recordsFailed = new AtomicLong();
+    private volatile long recordsRemaining;
+    private volatile String state = "IDLE";
+    private volatile String mode;
+    private volatile String phase;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    @Value("${media.rebuild.max-poll-records:5000}")
+    private int maxPollRecords;
+
+    @Value("${media.rebuild.fetch-min-bytes:1048576}")
+    private int fetchMinBytes;
+
+    @Value("${media.rebuild.max-partition-fetch-bytes:8388608}")
+    private int maxPartitionFetchBytes;
+
+    @Value("${media.rebuild.poll-timeout:2s}")
+    private Duration pollTimeout;
+
+    @Value("${media.rebuild.hydrate-on-startup:true}")
+    private boolean hydrateOnStartupEnabled;
+
+    @Value("${media.rebuild.hydrate-lock-ttl:1h}")
+    private Duration hydrateLockTtl;
+
+    @Value("${media.rebuild.listener-pause-timeout:30s}")
+    private Duration listenerPauseTimeout;
+
+    public ReadModelRebuildService(ConsumerFactory<Object, Object> consumerFactory,
+                                   KafkaListenerEndpointRegistry listenerRegistry,
+                                   RedisTemplate<String, String> redisTemplate,
+                                   UserRedisService userRedisService,
+                                   GroupRedisService groupRedisService,
+                                   ChannelRedisService channelRedisService,
+                                   UserGroupRedisService userGroupRedisService,
+                                   UserChannelRedisService userChannelRedisService,
+                                   PostRedisService postRedisService,
+                                   CommentRedisService commentRedisService,
+                                   GroupMembershipService groupMembershipService,
+                                   TimelineRedisService timelineRedisService,
+                                   StateProducerService stateProducerService) {
+        this.consumerFactory = consumerFactory;
+        this.listenerRegistry = listenerRegistry;
+        this.redisTemplate = redisTemplate;
+        this.userRedisService = userRedisService;
+        this.groupRedisService = groupRedisService;
+        this.channelRedisService = channelRedisService;
+        this.userGroupRedisService = userGroupRedisService;
+        this.userChannelRedisService = userChannelRedisService;
+        this.postRedisService = postRedisService;
+        this.commentRedisService = commentRedisService;
+        this.groupMembershipService = groupMembershipService;
+        this.timelineRedisService = timelineRedisService;
+        this.stateProducerService = stateProducerService;
+    }
+
+    // Marker được đặt bằng SET NX để chỉ một instance nạp snapshot khi nhiều instance cùng khởi động
+    @EventListener(ApplicationReadyEvent.class)
+    public void hydrateOnStartup() {
+        if (!hydrateOnStartupEnabled) {
+            return;
+        }
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(HYDRATED_KEY, "running", hydrateLockTtl))) {
+                if (isStateSeeded()) {
+                    log.info("Redis has no read model marker, hydrating from state topics");
+                    start(SNAPSHOT_MODE, SNAPSHOT_PHASES);
+                } else {
+                    log.info("Redis has no read model marker and the state topics were never seeded, replaying the event history");
+                    start(REPLAY_MODE, PHASES);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error starting read model hydration: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts a rebuild replaying the whole event history in the background.
+     *
+     * @return False if a rebuild is already running.
+     */
+    public boolean start() {
+        return start(REPLAY_MODE, PHASES);
+    }
+
+    /**
+     * Starts loading the read model from the compacted state topics in the background.
+     *
+     * @return False if a rebuild is already running.
+     */
+    public boolean startHydration() {
+        return start(SNAPSHOT_MODE, SNAPSHOT_PHASES);
+    }
+
+    private boolean start(String newMode, List<List<String>> phases) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        mode = newMode;
+        recordsApplied.set(0);
+        recordsFailed.set(0);
+        recordsRemaining = 0;
+        phase = null;
+        error = null;
+        finishedAt = null;
+        startedAt = Instant.now();
+        state = "RUNNING";
+        executor.execute(() -> run(phases));
+        return true;
+    }
+
+    /**
+     * Returns the progress of the running or last rebuild.
+     */
+    public RebuildStatusDto getStatus() {
+        Instant start = startedAt;
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        double seconds = start != null ? Math.max(Duration.between(start, end).toMillis(), 1) / 1000.0 : 0;
+        long applied = recordsApplied.get();
+        return new RebuildStatusDto(state, mode, phase, startedAt, finishedAt, applied, recordsFailed.get(),
+                recordsRemaining, seconds > 0 ? applied / seconds : 0, error);
+    }
+
+    private void run(List<List<String>> phases) {
+        try (Consumer<Object, Object> consumer = createConsumer()) {
+            pauseListeners();
+            loadScripts();
+            for (List<String> topics : phases) {
+                phase = String.join(",", topics);
+                replay(consumer, topics);
+            }
+            phase = TIMELINES_PHASE;
+            rebuildTimelines();
+            // Thành viên được nạp không kèm event group-member-added: bỏ các bản sao filter local một lần
+            groupMembershipService.membersRestored();
+            if (REPLAY_MODE.equals(mode)) {
+                stateProducerService.sendStateSeeded();
+            }
+            redisTemplate.opsForValue().set(HYDRATED_KEY, Instant.now().toString());
+            state = "COMPLETED";
+            log.info("Rebuilt Redis read models ({}): {} records applied, {} failed",
+                    mode, recordsApplied.get(), recordsFailed.get());
+        } catch (Exception e) {
+            state = "FAILED";
+            error = e.getMessage();
+            log.error("Error rebuilding Redis read models during phase {}: {}", phase, e.getMessage(), e);
+            try {
+                redisTemplate.delete(HYDRATED_KEY);
+            } catch (Exception deleteError) {
+                log.warn("Error clearing read model marker: {}", deleteError.getMessage());
+            }
+        } finally {
+            resumeListeners();
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    // pause() chỉ có hiệu lực ở lần poll sau: chờ các listener xử lý xong batch đang chạy
+    private void pauseListeners() throws InterruptedException {
+        listenerRegistry.getListenerContainers().forEach(MessageListenerContainer::pause);
+        long deadline = System.nanoTime() + listenerPauseTimeout.toNanos();
+        while (!listenerRegistry.getListenerContainers().stream().allMatch(this::isPausedOrStopped)) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Kafka listeners did not pause within " + listenerPauseTimeout);
+            }
+            Thread.sleep(50);
+        }
+        log.info("Paused {} Kafka listener containers for the rebuild", listenerRegistry.getListenerContainers().size());
+    }
+
+    private boolean isPausedOrStopped(MessageListenerContainer container) {
+        return !container.isRunning() || container.isContainerPaused();
+    }
+
+    private void resumeListeners() {
+        try {
+            listenerRegistry.getListenerContainers().forEach(MessageListenerContainer::resume);
+        } catch (Exception e) {
+            log.error("Error resuming Kafka listener containers: {}", e.getMessage(), e);
+        }
+    }
+
+    // Marker chỉ được ghi sau một replay hoàn tất, topic compacted nên record cuối luôn còn
+    private boolean isStateSeeded() {
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        try (Consumer<Object, Object> consumer = consumerFactory.createConsumer("media-service-rebuild", "seeded", null, properties)) {
+            List<TopicPartition> partitions = consumer.partitionsFor(StateProducerService.STATE_SEEDED_TOPIC).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            Map<TopicPartition, Long> beginnings = consumer.beginningOffsets(partitions);
+            Map<TopicPartition, Long> ends = consumer.endOffsets(partitions);
+            return partitions.stream().anyMatch(partition -> ends.get(partition) > beginnings.get(partition));
+        }
+    }
+
+    private Consumer<Object, Object> createConsumer() {
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        properties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
+        properties.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, String.valueOf(fetchMinBytes));
+        properties.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, String.valueOf(maxPartitionFetchBytes));
+        properties.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, "500");
+        // Partition được assign trực tiếp, group id chỉ để nhận diện client
+        return consumerFactory.createConsumer("media-service-rebuild", "rebuild", null, properties);
+    }
+
+    // Pipeline không tự fallback từ EVALSHA sang EVAL: nạp sẵn các script trước khi ghi
+    private void loadScripts() throws IOException {
+        Resource[] scripts = new PathMatchingResourcePatternResolver().getResources("classpath:scripts/*.lua");
+        for (Resource script : scripts) {
+            byte[] body = script.getContentAsByteArray();
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands().scriptLoad(body));
+        }
+    }
+
+    private void replay(Consumer<Object, Object> consumer, List<String> topics) {
+        List<TopicPartition> partitions = topics.stream()
+                .flatMap(topic -> consumer.partitionsFor(topic).stream()
+                        .map(info -> new TopicPartition(topic, info.partition())))
+                .toList();
+        consumer.assign(partitions);
+        consumer.seekToBeginning(partitions);
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+        log.info("Replaying {} partitions of {}", partitions.size(), topics);
+        while ((recordsRemaining = remaining(consumer, endOffsets)) > 0) {
+            ConsumerRecords<Object, Object> records;
+            try {
+                records = consumer.poll(pollTimeout);
+            } catch (RecordDeserializationException e) {
+                log.error("Skipping unreadable record {} at offset {}: {}", e.topicPartition(), e.offset(), e.getMessage());
+                recordsFailed.incrementAndGet();
+                consumer.seek(e.topicPartition(), e.offset() + 1);
+                continue;
+            }
+            if (!records.isEmpty()) {
+                applyPipelined(records);
+            }
+        }
+    }
+
+    // Timeline không có topic riêng: dựng lại từ index thời gian của các group sau khi post đã được nạp.
+    // Không chạy trong pipeline vì cần đọc index và thành viên của từng group
+    private void rebuildTimelines() {
+        AtomicLong groups = new AtomicLong();
+        AtomicLong posts = new AtomicLong();
+        postRedisService.forEachIndexedGroup(groupId -> {
+            posts.addAndGet(timelineRedisService.rebuildGroupTimelines(groupId));
+            groups.incrementAndGet();
+        });
+        log.info("Rebuilt timelines from the post index of {} groups ({} posts fanned out)", groups.get(), posts.get());
+    }
+
+    private long remaining(Consumer<Object, Object> consumer, Map<TopicPartition, Long> endOffsets) {
+        long remaining = 0;
+        for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet()) {
+            remaining += Math.max(0, end.getValue() - consumer.position(end.getKey()));
+        }
+        return remaining;
+    }
+
+    // Các lệnh Redis gọi qua template trên thread này trong SessionCallback đều đi vào cùng pipeline.
+    // Kết quả đọc trong pipeline là null, nên chỉ dùng các hàm ghi; createdAt đã index của các post cần tới
+    // được đọc trước khi mở pipeline. Pipeline lỗi làm cả lần rebuild FAILED: không biết lệnh nào đã được ghi.
+    private void applyPipelined(ConsumerRecords<Object, Object> records) {
+        List<ConsumerRecord<Object, Object>> tombstones = new ArrayList<>();
+        Map<String, Long> createdAts = indexedCreatedAt(records);
+        AtomicLong batchApplied = new AtomicLong();
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    for (ConsumerRecord<Object, Object> record : records) {
+                        if (record.value() == null) {
+                            tombstones.add(record);
+                            continue;
+                        }
+                        try {
+                            apply(record, createdAts);
+                            batchApplied.incrementAndGet();
+                        } catch (Exception e) {
+                            recordsFailed.incrementAndGet();
+                            log.error("Error replaying record {}-{}@{}: {}",
+                                    record.topic(), record.partition(), record.offset(), e.getMessage());
+                        }
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            // Lỗi của pipeline chỉ biết khi đóng pipeline, không biết lệnh nào lỗi
+            recordsFailed.addAndGet(batchApplied.get());
+            throw new IllegalStateException("Failed to write a batch of " + records.count() + " records to Redis", e);
+        }
+        recordsApplied.addAndGet(batchApplied.get());
+
+        // Tombstone được xử lý sau pipeline, sau các bản ghi đứng trước nó trong batch
+        for (ConsumerRecord<Object, Object> tombstone : tombstones) {
+            try {
+                applyTombstone(tombstone);
+                recordsApplied.incrementAndGet();
+            } catch (Exception e) {
+                recordsFailed.incrementAndGet();
+                log.error("Error replaying tombstone {}-{}@{}: {}",
+                        tombstone.topic(), tombstone.partition(), tombstone.offset(), e.getMessage());
+            }
+        }
+    }
+
+    // Post không có createdAt (update gửi createdAt = 0): lấy thời điểm đã index như listener
+    private Map<String, Long> indexedCreatedAt(ConsumerRecords<Object, Object> records) {
+        Map<String, List<String>> postIdsByGroup = new HashMap<>();
+        for (ConsumerRecord<Object, Object> record : records) {
+            if (record.value() instanceof Post post && post.getCreatedAt() <= 0) {
+                postIdsByGroup.computeIfAbsent(String.valueOf(post.getGroupId()), groupId -> new ArrayList<>())
+                        .add(String.valueOf(post.getId()));
+            }
+        }
+        return postIdsByGroup.isEmpty() ? Map.of() : postRedisService.getIndexedCreatedAt(postIdsByGroup);
+    }
+
+    private void applyTombstone(ConsumerRecord<Object, Object> record) {
+        String key = String.valueOf(record.key());
+        switch (record.topic()) {
+            case StateProducerService.POST_STATE_TOPIC -> {
+                String[] ids = StateProducerService.parsePostStateKey(key);
+                // Key không có channel: đọc post đã lưu để biết channel cần xóa
+                PostDto stored = postRedisService.getPostById(ids[0], ids[1]);
+                postRedisService.removePostFromGroup(ids[0], ids[1]);
+                if (stored != null && stored.channelId() != null) {
+                    postRedisService.removePostFromChannel(stored.channelId(), ids[1]);
+                }
+            }
+            case StateProducerService.COMMENT_STATE_TOPIC ->
+                    commentRedisService.removeComment(StateProducerService.parseCommentStateKey(key));
+            default -> log.debug("Ignoring null record on topic {}", record.topic());
+        }
+    }
+
+    private void apply(ConsumerRecord<Object, Object> record, Map<String, Long> createdAts) {
+        Object value = record.value();
+        if (value instanceof Post undated && undated.getCreatedAt() <= 0) {
+            value = Post.newBuilder(undated)
+                    .setCreatedAt(createdAts.getOrDefault(String.valueOf(undated.getId()), System.currentTimeMillis()))
+                    .build();
+        }
+        switch (record.topic()) {
+            case "user-create", "user-update" -> userRedisService.saveUser((User) value);
+            case "group-created", "group-updated" -> {
+                Group group = (Group) value;
+                if (group.getOwner() != null) {
+                    groupRedisService.addGroupToUser(group.getOwner().toString(), group);
+                }
+            }
+            case "channel-created", "channel-updated" -> channelRedisService.saveChannel((Channel) value);
+            case "user-group-create", "user-group-join" -> userGroupRedisService.restoreUserGroup((UserGroup) value);
+            case "user-channel-events" -> userChannelRedisService.saveUserChannel((UserChannel) value);
+            case "post-created", "post-updated" -> {
+                // Replay lịch sử cũng ghi lại post-state để các lần khởi động sau nạp được từ snapshot
+                Post post = (Post) value;
+                PostDto stored = savePost(post);
+                stateProducerService.sendPostState(Post.newBuilder(post).setCreatedAt(stored.createdAt()).build());
+            }
+            case "post-deleted" -> {
+                Post post = (Post) value;
+                postRedisService.removePostFromGroup(String.valueOf(post.getGroupId()), String.valueOf(post.getId()));
+                if (post.getChannelId() != null) {
+                    postRedisService.removePostFromChannel(String.valueOf(post.getChannelId()), String.valueOf(post.getId()));
+                }
+                stateProducerService.sendPostTombstone(post);
+            }
+            case "comment-created", "comment-updated" -> {
+                commentRedisService.saveComment((Comment) value);
+                stateProducerService.sendCommentState((Comment) value);
+            }
+            case "comment-deleted" -> {
+                commentRedisService.removeComment((Comment) value);
+                stateProducerService.sendCommentTombstone((Comment) value);
+            }
+            case StateProducerService.POST_STATE_TOPIC -> savePost((Post) value);
+            case StateProducerService.COMMENT_STATE_TOPIC -> commentRedisService.saveComment((Comment) value);
+            default -> log.warn("No rebuild handler for topic {}", record.topic());
+        }
+    }
+
+    private PostDto savePost(Post post) {
+        PostDto stored = postRedisService.addPostToGroup(String.valueOf(post.getGroupId()), post);
+        if (post.getChannelId() != null) {
+            postRedisService.addPostToChannel(String.valueOf(post.getChannelId()), post);
+        }
+        return stored;
+    }
+}
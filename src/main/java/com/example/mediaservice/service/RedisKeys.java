@@ -0,0 +1,21 @@
+package com.example.mediaservice.service;
+
+/**
+ * Helpers for building Redis keys.
+ * <p>
+ * Redis Cluster only hashes the part of a key between the first {@code {}} pair, so every key built
+ * around the same tagged id (e.g. {@code group:{gid}:posts} and its index) lands in the same slot and
+ * can be used together in one multi-key command or Lua script.
+ */
+public final class RedisKeys {
+
+    private RedisKeys() {
+    }
+
+    /**
+     * Wraps an id in a cluster hash tag.
+     */
+    public static String tag(Object id) {
+        return "{" + id + "}";
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.mediaservice.service;
+
+import com.example.mediaservice.dto.PageDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class RedisScanService {
+
+    private static final String START_CURSOR = "0";
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SSCAN_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/sscan.lua"), List.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * Reads one SSCAN page of a set, resuming from the given cursor.
+     * Spring's Cursor always restarts at 0, so the page is read through a one-line script that
+     * returns Redis' own cursor to the caller.
+     *
+     * @param key    The set key.
+     * @param cursor The cursor returned by the previous page, null or "0" for the first page.
+     * @param count  COUNT hint passed to SSCAN.
+     * @return The members of this page and the next cursor (null when the scan is complete).
+     */
+    @SuppressWarnings("unchecked")
+    public PageDto<String> scanSet(String key, String cursor, int count) {
+        try {
+            String startCursor = cursor == null || cursor.isBlank() ? START_CURSOR : cursor;
+            List<Object> reply = redisTemplate.execute(SSCAN_SCRIPT, List.of(key), startCursor, String.valueOf(count));
+
+            String nextCursor = String.valueOf(reply.get(0));
+            List<String> members = (List<String>) reply.get(1);
+
+            return new PageDto<>(members, START_CURSOR.equals(nextCursor) ? null : nextCursor);
+        } catch (Exception e) {
+            log.error("Error scanning set '{}' in Redis: {}", key, e.getMessage(), e);
+            throw new RuntimeException("Failed to scan set in Redis", e);
+        }
+    }
+
+    /**
+     * Walks a whole set page by page, handing each SSCAN page to the consumer before reading the next,
+     * so at most one page is held in memory.
+     *
+     * @param key      The set key.
+     * @param count    COUNT hint passed to SSCAN.
+     * @param consumer Receives each non-empty page.
+     */
+    public void forEachSetPage(String key, int count, Consumer<List<String>> consumer) {
+        String cursor = null;
+        do {
+            PageDto<String> page = scanSet(key, cursor, count);
+            if (!page.items().isEmpty()) {
+                consumer.accept(page.items());
+            }
+            cursor = page.nextCursor();
+        } while (cursor != null);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.mediaservice.service;
+
+import com.example.mediaservice.config.MetricsConfig;
+import com.example.mediaservice.dto.PageDto;
+import com.example.mediaservice.dto.PostDto;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Home timeline của user.
+ * <p>
+ * Fan-out khi ghi: post mới được thêm vào timeline:{userId} (zset {groupId|postId: createdAt}) của mọi thành
+ * viên trong group. Group có nhiều hơn media.timeline.fanout-max-members thành viên không được fan-out; khi
+ * đọc, index thời gian của các group đó được merge vào timeline (fan-out khi đọc).
+ */
+@Timed(MetricsConfig.REDIS_SERVICE_TIMER)
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class TimelineRedisService {
+
+    private static final String TIMELINE_KEY_PREFIX = "timeline:";
+    private static final String ENTRY_SEPARATOR = "|";
+    // Đọc thêm một ít để bù các post cùng createdAt với cursor bị lọc bỏ
+    private static final int TIE_OVERFETCH = 32;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final PostRedisService postRedisService;
+    private final GroupMembershipService groupMembershipService;
+    private final UserGroupRedisService userGroupRedisService;
+
+    @Value("${media.timeline.fanout-max-members:5000}")
+    private long fanoutMaxMembers;
+
+    @Value("${media.timeline.max-size:800}")
+    private int maxSize;
+
+    @Value("${media.timeline.fanout-batch-size:500}")
+    private int fanoutBatchSize;
+
+    private String getTimelineKey(String userId) {
+        return TIMELINE_KEY_PREFIX + RedisKeys.tag(userId);
+    }
+
+    /**
+     * Pushes a new post into the timelines of the group's members, one pipelined SSCAN page at a time.
+     * Each timeline is trimmed to media.timeline.max-size entries. Large groups are skipped and merged
+     * at read time instead.
+     */
+    public void fanOutPost(String groupId, String postId, long createdAt) {
+        long members = groupMembershipService.countMembers(groupId);
+        if (members > fanoutMaxMembers) {
+            log.debug("Skipped fan-out of post {} to group {} with {} members (read-time merge)", postId, groupId, members);
+            return;
+        }
+
+        byte[] entry = (groupId + ENTRY_SEPARATOR + postId).getBytes(StandardCharsets.UTF_8);
+        groupMembershipService.forEachMemberPage(groupId, fanoutBatchSize, userIds ->
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (String userId : userIds) {
+                        byte[] timelineKey = getTimelineKey(userId).getBytes(StandardCharsets.UTF_8);
+                        connection.zSetCommands().zAdd(timelineKey, createdAt, entry);
+                        connection.zSetCommands().zRemRange(timelineKey, 0, -(maxSize + 1));
+                    }
+                    return null;
+                }));
+
+        log.debug("Fanned out post {} of group {} to {} timelines", postId, groupId, members);
+    }
+
+    /**
+     * Rebuilds the timeline entries of one group from its time index: the newest media.timeline.max-size
+     * posts are added to the timeline of every member, one pipelined SSCAN page at a time. Large groups are
+     * skipped as in {@link #fanOutPost}.
+     *
+     * @return The number of posts fanned out.
+     */
+    public int rebuildGroupTimelines(String groupId) {
+        if (groupMembershipService.countMembers(groupId) > fanoutMaxMembers) {
+            return 0;
+        }
+        List<ZSetOperations.TypedTuple<String>> posts = postRedisService
+                .getLatestPostIds(List.of(groupId), Long.MAX_VALUE, maxSize)
+                .getOrDefault(groupId, List.of());
+        if (posts.isEmpty()) {
+            return 0;
+        }
+
+        groupMembershipService.forEachMemberPage(groupId, fanoutBatchSize, userIds ->
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (String userId : userIds) {
+                        byte[] timelineKey = getTimelineKey(userId).getBytes(StandardCharsets.UTF_8);
+                        for (ZSetOperations.TypedTuple<String> post : posts) {
+                            byte[] entry = (groupId + ENTRY_SEPARATOR + post.getValue()).getBytes(StandardCharsets.UTF_8);
+                            connection.zSetCommands().zAdd(timelineKey, post.getScore(), entry);
+                        }
+                        connection.zSetCommands().zRemRange(timelineKey, 0, -(maxSize + 1));
+                    }
+                    return null;
+                }));
+        return posts.size();
+    }
+
+    /**
+     * Reads one page of the user's home timeline, newest first.
+     *
+     * @param cursor The cursor returned by the previous page ("createdAt:postId"), or null for the first page.
+     * @param limit  Page size.
+     * @return The posts of this page and the cursor of the next one (null when there are no more posts).
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public PageDto<PostDto> getTimeline(String userId, String cursor, int limit) {
+        FeedCursor after = FeedCursor.parse(cursor);
+        try {
+            int fetch = limit + TIE_OVERFETCH;
+
+            // Các group quá lớn để fan-out: đọc thẳng index của group
+            Set<String> groupIds = userGroupRedisService.getUserGroupIds(userId);
+            List<String> largeGroups = groupMembershipService.countMembers(groupIds).entrySet().stream()
+                    .filter(count -> count.getValue() > fanoutMaxMembers)
+                    .map(Map.Entry::getKey)
+                    .toList();
+
+            List<FeedEntry> candidates = new ArrayList<>();
+            Set<ZSetOperations.TypedTuple<String>> fannedOut = redisTemplate.opsForZSet()
+                    .reverseRangeByScoreWithScores(getTimelineKey(userId), 0, after.maxScore(), 0, fetch);
+            if (fannedOut != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : fannedOut) {
+                    FeedEntry entry = parseEntry(tuple.getValue(), tuple.getScore());
+                    if (entry != null) {
+                        candidates.add(entry);
+                    }
+                }
+            }
+            if (!largeGroups.isEmpty()) {
+                postRedisService.getLatestPostIds(largeGroups, after.maxScore(), fetch).forEach((groupId, tuples) -> {
+                    for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                        candidates.add(new FeedEntry(groupId, tuple.getValue(), tuple.getScore().longValue()));
+                    }
+                });
+            }
+
+            List<FeedEntry> page = candidates.stream()
+                    .filter(after::isBefore)
+                    .distinct()
+                    .sorted(FeedEntry.NEWEST_FIRST)
+                    .limit(limit)
+                    .toList();
+
+            Map<String, PostDto> posts = postRedisService.getPostsByIds(FeedEntry.postIdsByGroup(page));
+
+            // Post đã bị xóa vẫn còn trong timeline đến khi bị trim: bỏ qua khi đọc
+            List<PostDto> items = page.stream()
+                    .map(entry -> posts.get(entry.postId()))
+                    .filter(Objects::nonNull)
+                    .toList();
+
+            String nextCursor = page.size() < limit ? null : page.get(page.size() - 1).toCursor();
+            return new PageDto<>(items, nextCursor);
+        } catch (Exception e) {
+            log.error("Error retrieving timeline of user '{}' from Redis: {}", userId, e.getMessage(), e);
+            throw new RuntimeException("Failed to retrieve timeline from Redis", e);
+        }
+    }
+
+    // Phần tử timeline có dạng groupId|postId
+    private FeedEntry parseEntry(String value, Double score) {
+        int separator = value != null ? value.indexOf(ENTRY_SEPARATOR) : -1;
+        if (separator < 0 || score == null) {
+            return null;
+        }
+        return new FeedEntry(value.substring(0, separator), value.substring(separator + 1), score.longValue());
+    }
+}
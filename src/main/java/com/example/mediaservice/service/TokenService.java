@@ -2,28 +2,57 @@ package com.example.mediaservice.service;
 
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 @Service
 public class TokenService {
+
+    private static final String EMAIL_ATTRIBUTE = TokenService.class.getName() + ".email";
+
+    /**
+     * Returns the email claim of the current request's JWT.
+     *
+     * @throws RuntimeException if the request has no JWT or the JWT has no email.
+     */
     public String getEmailFromToken() {
+        String email = findEmail();
+        if (email == null) {
+            throw new RuntimeException("Email not found in token");
+        }
+        return email;
+    }
+
+    /**
+     * Returns the email claim of the current request's JWT, or null for anonymous requests. The result is kept
+     * as a request attribute, so later calls in the same request do not read the security context again.
+     */
+    public String findEmail() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null && request.getAttribute(EMAIL_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof String email) {
+            return email;
+        }
+
+        String email = readEmail();
+        if (request != null && email != null) {
+            request.setAttribute(EMAIL_ATTRIBUTE, email, RequestAttributes.SCOPE_REQUEST);
+        }
+        return email;
+    }
+
+    private String readEmail() {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
             if (authentication != null && authentication.isAuthenticated()
                     && authentication instanceof JwtAuthenticationToken jwtAuth) {
-
-                Jwt jwt = (Jwt) jwtAuth.getPrincipal();
-
-                String email = jwt.getClaimAsString("email");
-                if (email != null) return email;
+                return jwtAuth.getToken().getClaimAsString("email");
             }
+            return null;
         } catch (Exception e) {
             throw new RuntimeException("Failed to extract email from token", e);
         }
-
-        throw new RuntimeException("Email not found in token");
     }
 }
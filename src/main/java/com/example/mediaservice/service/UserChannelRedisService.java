@@ -1,6 +1,9 @@
 package com.example.mediaservice.service;
 
+import com.example.mediaservice.config.MetricsConfig;
+import com.example.mediaservice.dto.PageDto;
 import com.example.mediaservice.entity.relationship.UserChannel;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.HashOperations;
@@ -8,10 +11,13 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+@Timed(MetricsConfig.REDIS_SERVICE_TIMER)
 @Service
 @AllArgsConstructor
 @Slf4j
@@ -21,46 +27,61 @@ public class UserChannelRedisService {
     private static final String CHANNEL_USERS_SET_KEY = "channel:users";
     private static final String USER_CHANNELS_SET_KEY = "user:channels";
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisScanService redisScanService;
+
+    // Relationship hash và set user của channel cùng hash tag channelId
+    private String getUserChannelKey(String userId, String channelId) {
+        return USER_CHANNEL_HASH_KEY + ":" + userId + ":" + RedisKeys.tag(channelId);
+    }
+
+    private String getChannelUsersKey(String channelId) {
+        return CHANNEL_USERS_SET_KEY + ":" + RedisKeys.tag(channelId);
+    }
+
+    private String getUserChannelsKey(String userId) {
+        return USER_CHANNELS_SET_KEY + ":" + RedisKeys.tag(userId);
+    }
 
     public void saveUserChannel(UserChannel userChannel) {
         try {
-            HashOperations<String, String, Object> hashOps = redisTemplate.opsForHash();
-            String userChannelKey = userChannel.getUserId() + ":" + userChannel.getChannelId();
+            HashOperations<String, String, String> hashOps = redisTemplate.opsForHash();
+            String userId = String.valueOf(userChannel.getUserId());
+            String channelId = String.valueOf(userChannel.getChannelId());
 
-            Map<String, Object> userChannelMap = new HashMap<>();
-            userChannelMap.put("userId", String.valueOf(userChannel.getUserId()));
-            userChannelMap.put("channelId", String.valueOf(userChannel.getChannelId()));
+            Map<String, String> userChannelMap = new HashMap<>();
+            userChannelMap.put("userId", userId);
+            userChannelMap.put("channelId", channelId);
             userChannelMap.put("relationship", String.valueOf(userChannel.getUserChannelRelationship()));
 
             // Save user-channel relationship
-            hashOps.putAll(USER_CHANNEL_HASH_KEY + ":" + userChannelKey, userChannelMap);
+            hashOps.putAll(getUserChannelKey(userId, channelId), userChannelMap);
 
             // Add user to channel's user set
-            redisTemplate.opsForSet().add(CHANNEL_USERS_SET_KEY + ":" + userChannel.getChannelId(), String.valueOf(userChannel.getUserId()));
+            redisTemplate.opsForSet().add(getChannelUsersKey(channelId), userId);
 
             // Add channel to user's channel set
-            redisTemplate.opsForSet().add(USER_CHANNELS_SET_KEY + ":" + userChannel.getUserId(), String.valueOf(userChannel.getChannelId()));
+            redisTemplate.opsForSet().add(getUserChannelsKey(userId), channelId);
 
-            log.info("Saved user-channel relationship to Redis: userId={}, channelId={}", userChannel.getUserId(), userChannel.getChannelId());
+            log.debug("Saved user-channel relationship to Redis: userId={}, channelId={}", userChannel.getUserId(), userChannel.getChannelId());
         } catch (Exception e) {
             log.error("Error saving user-channel relationship to Redis: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to save user-channel relationship to Redis", e);
         }
     }
 
-    public Map<String, Object> getUserChannel(String userId, String channelId) {
+    public Map<String, String> getUserChannel(String userId, String channelId) {
         try {
-            HashOperations<String, String, Object> hashOps = redisTemplate.opsForHash();
-            String userChannelKey = USER_CHANNEL_HASH_KEY + ":" + userId + ":" + channelId;
-            Map<String, Object> userChannelMap = hashOps.entries(userChannelKey);
+            HashOperations<String, String, String> hashOps = redisTemplate.opsForHash();
+            String userChannelKey = getUserChannelKey(userId, channelId);
+            Map<String, String> userChannelMap = hashOps.entries(userChannelKey);
 
             if (userChannelMap.isEmpty()) {
                 log.warn("User-channel relationship not found: userId={}, channelId={}", userId, channelId);
                 return null;
             }
 
-            log.info("Retrieved user-channel relationship from Redis: userId={}, channelId={}", userId, channelId);
+            log.debug("Retrieved user-channel relationship from Redis: userId={}, channelId={}", userId, channelId);
             return userChannelMap;
         } catch (Exception e) {
             log.error("Error retrieving user-channel relationship from Redis: {}", e.getMessage(), e);
@@ -68,10 +89,10 @@ public class UserChannelRedisService {
         }
     }
 
-    public Set<Object> getChannelUsers(String channelId) {
+    public Set<String> getChannelUsers(String channelId) {
         try {
-            Set<Object> users = redisTemplate.opsForSet().members(CHANNEL_USERS_SET_KEY + ":" + channelId);
-            log.info("Retrieved {} users for channel: {}", users != null ? users.size() : 0, channelId);
+            Set<String> users = redisTemplate.opsForSet().members(getChannelUsersKey(channelId));
+            log.debug("Retrieved {} users for channel: {}", users != null ? users.size() : 0, channelId);
             return users;
         } catch (Exception e) {
             log.error("Error retrieving channel users from Redis: {}", e.getMessage(), e);
@@ -79,10 +100,26 @@ public class UserChannelRedisService {
         }
     }
 
-    public Set<Object> getUserChannels(String userId) {
+    /**
+     * Returns one page of the channel's users using SSCAN.
+     *
+     * @param cursor The cursor from the previous page, or null for the first page.
+     */
+    public PageDto<String> scanChannelUsers(String channelId, String cursor, int count) {
+        return redisScanService.scanSet(getChannelUsersKey(channelId), cursor, count);
+    }
+
+    /**
+     * Walks all users of the channel one SSCAN page at a time.
+     */
+    public void forEachChannelUsersPage(String channelId, int count, Consumer<List<String>> consumer) {
+        redisScanService.forEachSetPage(getChannelUsersKey(channelId), count, consumer);
+    }
+
+    public Set<String> getUserChannels(String userId) {
         try {
-            Set<Object> channels = redisTemplate.opsForSet().members(USER_CHANNELS_SET_KEY + ":" + userId);
-            log.info("Retrieved {} channels for user: {}", channels != null ? channels.size() : 0, userId);
+            Set<String> channels = redisTemplate.opsForSet().members(getUserChannelsKey(userId));
+            log.debug("Retrieved {} channels for user: {}", channels != null ? channels.size() : 0, userId);
             return channels;
         } catch (Exception e) {
             log.error("Error retrieving user channels from Redis: {}", e.getMessage(), e);
@@ -92,16 +129,16 @@ public class UserChannelRedisService {
 
     public void deleteUserChannel(String userId, String channelId) {
         try {
-            String userChannelKey = USER_CHANNEL_HASH_KEY + ":" + userId + ":" + channelId;
+            String userChannelKey = getUserChannelKey(userId, channelId);
             redisTemplate.delete(userChannelKey);
 
             // Remove user from channel's user set
-            redisTemplate.opsForSet().remove(CHANNEL_USERS_SET_KEY + ":" + channelId, userId);
+            redisTemplate.opsForSet().remove(getChannelUsersKey(channelId), userId);
 
             // Remove channel from user's channel set
-            redisTemplate.opsForSet().remove(USER_CHANNELS_SET_KEY + ":" + userId, channelId);
+            redisTemplate.opsForSet().remove(getUserChannelsKey(userId), channelId);
 
-            log.info("Deleted user-channel relationship from Redis: userId={}, channelId={}", userId, channelId);
+            log.debug("Deleted user-channel relationship from Redis: userId={}, channelId={}", userId, channelId);
         } catch (Exception e) {
             log.error("Error deleting user-channel relationship from Redis: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to delete user-channel relationship from Redis", e);
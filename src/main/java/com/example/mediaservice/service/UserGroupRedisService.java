@@ -1,46 +1,82 @@
 package com.example.mediaservice.service;
 
+import com.example.mediaservice.config.MetricsConfig;
+import com.example.mediaservice.dto.PageDto;
 import com.example.mediaservice.entity.relationship.UserGroup;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.SetOperations;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
+@Timed(MetricsConfig.REDIS_SERVICE_TIMER)
 @Service
 @AllArgsConstructor
 @Slf4j
 public class UserGroupRedisService {
 
     private static final String USER_GROUP_HASH_KEY = "user:group";
-    private static final String GROUP_USERS_SET_KEY = "group:users";
+    // Set id các group của user, đọc khi gộp timeline. Khác với hash user:{email}:groups của GroupRedisService
+    // (GroupDto đầy đủ cho màn hình danh sách group): set này là nguồn đúng cho membership của user
+    private static final String USER_GROUP_IDS_SET_KEY = "user:group-ids";
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final GroupMembershipService groupMembershipService;
+
+    // Relationship hash và set user của group (GroupMembershipService) cùng hash tag groupId
+    private String getUserGroupKey(String userId, String groupId) {
+        return USER_GROUP_HASH_KEY + ":" + userId + ":" + RedisKeys.tag(groupId);
+    }
+
+    private String getUserGroupsKey(String userId) {
+        return USER_GROUP_IDS_SET_KEY + ":" + RedisKeys.tag(userId);
+    }
 
     public void saveUserGroup(UserGroup userGroup) {
+        saveUserGroup(userGroup, true);
+    }
+
+    /**
+     * Saves a relationship like {@link #saveUserGroup(UserGroup)} without publishing a bus event per member,
+     * see {@link GroupMembershipService#restoreMember}. Used by the read model rebuild.
+     */
+    public void restoreUserGroup(UserGroup userGroup) {
+        saveUserGroup(userGroup, false);
+    }
+
+    private void saveUserGroup(UserGroup userGroup, boolean publish) {
         try {
-            HashOperations<String, String, Object> hashOps = redisTemplate.opsForHash();
-            SetOperations<String, Object> setOps = redisTemplate.opsForSet();
+            HashOperations<String, String, String> hashOps = redisTemplate.opsForHash();
 
-            String userGroupKey = userGroup.getUserId() + ":" + userGroup.getGroupId();
+            String userId = String.valueOf(userGroup.getUserId());
+            String groupId = String.valueOf(userGroup.getGroupId());
 
-            Map<String, Object> userGroupMap = new HashMap<>();
-            userGroupMap.put("userId", String.valueOf(userGroup.getUserId()));
-            userGroupMap.put("groupId", String.valueOf(userGroup.getGroupId()));
+            Map<String, String> userGroupMap = new HashMap<>();
+            userGroupMap.put("userId", userId);
+            userGroupMap.put("groupId", groupId);
             userGroupMap.put("relationshipType", userGroup.getUserGroupRelationship().toString());
 
             // Save user-group relationship
-            hashOps.putAll(USER_GROUP_HASH_KEY + ":" + userGroupKey, userGroupMap);
+            hashOps.putAll(getUserGroupKey(userId, groupId), userGroupMap);
+
+            // Add user to group's user set (and its Bloom filter for large groups)
+            if (publish) {
+                groupMembershipService.addMember(groupId, userId);
+            } else {
+                groupMembershipService.restoreMember(groupId, userId);
+            }
 
-            // Add user to group's user set
-            setOps.add(GROUP_USERS_SET_KEY + ":" + userGroup.getGroupId(), String.valueOf(userGroup.getUserId()));
+            // Add group to user's group set
+            redisTemplate.opsForSet().add(getUserGroupsKey(userId), groupId);
 
-            log.info("Saved user-group relationship to Redis - User: {}, Group: {}, Type: {}",
+            log.debug("Saved user-group relationship to Redis - User: {}, Group: {}, Type: {}",
                     userGroup.getUserId(), userGroup.getGroupId(), userGroup.getUserGroupRelationship());
         } catch (Exception e) {
             log.error("Error saving user-group relationship to Redis: {}", e.getMessage(), e);
@@ -48,18 +84,18 @@ public class UserGroupRedisService {
         }
     }
 
-    public Map<String, Object> getUserGroup(String userId, String groupId) {
+    public Map<String, String> getUserGroup(String userId, String groupId) {
         try {
-            HashOperations<String, String, Object> hashOps = redisTemplate.opsForHash();
-            String userGroupKey = USER_GROUP_HASH_KEY + ":" + userId + ":" + groupId;
-            Map<String, Object> userGroupMap = hashOps.entries(userGroupKey);
+            HashOperations<String, String, String> hashOps = redisTemplate.opsForHash();
+            String userGroupKey = getUserGroupKey(userId, groupId);
+            Map<String, String> userGroupMap = hashOps.entries(userGroupKey);
 
             if (userGroupMap.isEmpty()) {
                 log.warn("User-group relationship not found in Redis - User: {}, Group: {}", userId, groupId);
                 return null;
             }
 
-            log.info("Retrieved user-group relationship from Redis - User: {}, Group: {}", userId, groupId);
+            log.debug("Retrieved user-group relationship from Redis - User: {}, Group: {}", userId, groupId);
             return userGroupMap;
         } catch (Exception e) {
             log.error("Error retrieving user-group relationship from Redis: {}", e.getMessage(), e);
@@ -67,13 +103,11 @@ public class UserGroupRedisService {
         }
     }
 
-    public Set<Object> getGroupUsers(String groupId) {
+    public Set<String> getGroupUsers(String groupId) {
         try {
-            SetOperations<String, Object> setOps = redisTemplate.opsForSet();
-            String groupUsersKey = GROUP_USERS_SET_KEY + ":" + groupId;
-            Set<Object> users = setOps.members(groupUsersKey);
+            Set<String> users = groupMembershipService.getMembers(groupId);
 
-            log.info("Retrieved {} users for group {} from Redis", users != null ? users.size() : 0, groupId);
+            log.debug("Retrieved {} users for group {} from Redis", users != null ? users.size() : 0, groupId);
             return users;
         } catch (Exception e) {
             log.error("Error retrieving group users from Redis: {}", e.getMessage(), e);
@@ -81,18 +115,54 @@ public class UserGroupRedisService {
         }
     }
 
-    public void deleteUserGroup(String userId, String groupId) {
+    /**
+     * Returns the ids of all groups the user has created or joined.
+     */
+    public Set<String> getUserGroupIds(String userId) {
         try {
-            HashOperations<String, String, Object> hashOps = redisTemplate.opsForHash();
-            SetOperations<String, Object> setOps = redisTemplate.opsForSet();
+            Set<String> groupIds = redisTemplate.opsForSet().members(getUserGroupsKey(userId));
+            return groupIds != null ? groupIds : Set.of();
+        } catch (Exception e) {
+            log.error("Error retrieving user groups from Redis: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to retrieve user groups from Redis", e);
+        }
+    }
+
+    /**
+     * Returns one page of the group's users using SSCAN.
+     *
+     * @param cursor The cursor from the previous page, or null for the first page.
+     */
+    public PageDto<String> scanGroupUsers(String groupId, String cursor, int count) {
+        return groupMembershipService.scanMembers(groupId, cursor, count);
+    }
+
+    /**
+     * Walks all users of the group one SSCAN page at a time.
+     */
+    public void forEachGroupUsersPage(String groupId, int count, Consumer<List<String>> consumer) {
+        groupMembershipService.forEachMemberPage(groupId, count, consumer);
+    }
 
-            String userGroupKey = USER_GROUP_HASH_KEY + ":" + userId + ":" + groupId;
+    /**
+     * Checks whether a user belongs to a group, see {@link GroupMembershipService#isMember}.
+     */
+    public boolean isGroupMember(String groupId, String userId) {
+        return groupMembershipService.isMember(groupId, userId);
+    }
+
+    public void deleteUserGroup(String userId, String groupId) {
+        try {
+            String userGroupKey = getUserGroupKey(userId, groupId);
             redisTemplate.delete(userGroupKey);
 
             // Remove user from group's user set
-            setOps.remove(GROUP_USERS_SET_KEY + ":" + groupId, String.valueOf(userId));
+            groupMembershipService.removeMember(groupId, String.valueOf(userId));
+
+            // Remove group from user's group set
+            redisTemplate.opsForSet().remove(getUserGroupsKey(userId), groupId);
 
-            log.info("Deleted user-group relationship from Redis - User: {}, Group: {}", userId, groupId);
+            log.debug("Deleted user-group relationship from Redis - User: {}, Group: {}", userId, groupId);
         } catch (Exception e) {
             log.error("Error deleting user-group relationship from Redis: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to delete user-group relationship from Redis", e);
@@ -1,15 +1,23 @@
 package com.example.mediaservice.service;
 
+import com.example.mediaservice.config.MetricsConfig;
 import com.example.mediaservice.entity.User;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+@Timed(MetricsConfig.REDIS_SERVICE_TIMER)
 @Service
 @AllArgsConstructor
 @Slf4j
@@ -17,14 +25,19 @@ public class UserRedisService {
 
     private static final String USER_HASH_KEY = "user";
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+
+    // user:{email} cùng slot với user:{email}:groups
+    private String getUserKey(String email) {
+        return USER_HASH_KEY + ":" + RedisKeys.tag(email);
+    }
 
     public void saveUser(User user) {
         try {
-            HashOperations<String, String, Object> hashOps = redisTemplate.opsForHash();
+            HashOperations<String, String, String> hashOps = redisTemplate.opsForHash();
             String userKey = String.valueOf(user.getEmail());
             
-            Map<String, Object> userMap = new HashMap<>();
+            Map<String, String> userMap = new HashMap<>();
             userMap.put("email", String.valueOf(user.getEmail()));
             userMap.put("dateOfBirth", user.getDateOfBirth() != null ? String.valueOf(user.getDateOfBirth()) : null);
             userMap.put("gender", user.getGender() != null ? String.valueOf(user.getGender()) : null);
@@ -32,28 +45,42 @@ public class UserRedisService {
             userMap.put("occupation", user.getOccupation() != null ? String.valueOf(user.getOccupation()) : null);
             userMap.put("firstName", user.getFirstName() != null ? String.valueOf(user.getFirstName()) : null);
             userMap.put("lastName", user.getLastName() != null ? String.valueOf(user.getLastName()) : null);
-            userMap.put("version", user.getVersion() != null ? user.getVersion() : null);
+            userMap.put("version", user.getVersion() != null ? String.valueOf(user.getVersion()) : null);
+
+            // Redis hash không lưu được giá trị null: ghi các field có giá trị, xóa các field đã bị bỏ trống
+            Map<String, String> presentFields = new HashMap<>();
+            List<String> absentFields = new ArrayList<>();
+            userMap.forEach((field, value) -> {
+                if (value != null) {
+                    presentFields.put(field, value);
+                } else {
+                    absentFields.add(field);
+                }
+            });
 
-            hashOps.putAll(USER_HASH_KEY + ":" + userKey, userMap);
-            log.info("Saved user to Redis with key: {}", userKey);
+            hashOps.putAll(getUserKey(userKey), presentFields);
+            if (!absentFields.isEmpty()) {
+                hashOps.delete(getUserKey(userKey), absentFields.toArray());
+            }
+            log.debug("Saved user to Redis with key: {}", userKey);
         } catch (Exception e) {
             log.error("Error saving user to Redis: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to save user to Redis", e);
         }
     }
 
-    public Map<String, Object> getUser(String email) {
+    public Map<String, String> getUser(String email) {
         try {
-            HashOperations<String, String, Object> hashOps = redisTemplate.opsForHash();
-            String userKey = USER_HASH_KEY + ":" + email;
-            Map<String, Object> userMap = hashOps.entries(userKey);
+            HashOperations<String, String, String> hashOps = redisTemplate.opsForHash();
+            String userKey = getUserKey(email);
+            Map<String, String> userMap = hashOps.entries(userKey);
             
             if (userMap.isEmpty()) {
                 log.warn("User not found in Redis with email: {}", email);
                 return null;
             }
             
-            log.info("Retrieved user from Redis with email: {}", email);
+            log.debug("Retrieved user from Redis with email: {}", email);
             return userMap;
         } catch (Exception e) {
             log.error("Error retrieving user from Redis: {}", e.getMessage(), e);
@@ -61,11 +88,43 @@ public class UserRedisService {
         }
     }
 
+    /**
+     * Reads many users with one pipelined batch of HGETALL.
+     *
+     * @return Found users keyed by email; missing users are left out.
+     */
+    public Map<String, Map<String, String>> getUsers(Collection<String> emails) {
+        try {
+            List<String> keys = emails.stream().map(this::getUserKey).toList();
+            List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    connection.hashCommands().hGetAll(key.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+
+            Map<String, Map<String, String>> users = new HashMap<>();
+            int i = 0;
+            for (String email : emails) {
+                @SuppressWarnings("unchecked")
+                Map<String, String> user = (Map<String, String>) replies.get(i++);
+                if (user != null && !user.isEmpty()) {
+                    users.put(email, user);
+                }
+            }
+            log.debug("Retrieved {} of {} users from Redis", users.size(), emails.size());
+            return users;
+        } catch (Exception e) {
+            log.error("Error retrieving users from Redis: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to retrieve users from Redis", e);
+        }
+    }
+
     public void deleteUser(String email) {
         try {
-            String userKey = USER_HASH_KEY + ":" + email;
+            String userKey = getUserKey(email);
             redisTemplate.delete(userKey);
-            log.info("Deleted user from Redis with email: {}", email);
+            log.debug("Deleted user from Redis with email: {}", email);
         } catch (Exception e) {
             log.error("Error deleting user from Redis: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to delete user from Redis", e);
@@ -0,0 +1,146 @@
+package com.example.mediaservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-your-writes cho các endpoint ghi bất đồng bộ.
+ * <p>
+ * Write token là vị trí của event trong Kafka (&lt;topic&gt;:&lt;partition&gt;:&lt;offset&gt;). Consumer ghi offset lớn nhất
+ * đã áp dụng của mỗi partition vào key readmodel:applied-offset:{&lt;topic&gt;:&lt;partition&gt;} sau khi ghi Redis (mỗi
+ * partition một key nên các key được chia đều trên các slot khi chạy cluster), nên event đã hiển thị khi
+ * offset đó không nhỏ hơn offset trong token. Listener ném lại lỗi để record lỗi được thử lại trước khi partition
+ * đi tiếp, offset không vượt qua record chưa ghi được. Instance đang chờ được đánh thức ngay khi chính nó áp dụng event,
+ * nếu event do instance khác consume thì nó đọc lại hash sau mỗi media.visibility.poll-interval.
+ */
+@Slf4j
+@Service
+public class WriteVisibilityService {
+
+    public static final String WRITE_TOKEN_HEADER = "X-Write-Token";
+
+    private static final String APPLIED_OFFSET_KEY_PREFIX = "readmodel:applied-offset:";
+
+    private static final RedisScript<Long> APPLIED_OFFSET_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/applied-offset.lua"), Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    // Offset đã áp dụng bởi instance này, tránh đọc Redis khi chính nó consume event
+    private final Map<String, Long> localOffsets = new ConcurrentHashMap<>();
+    private final Object appliedSignal = new Object();
+
+    @Value("${media.visibility.max-wait:2s}")
+    private Duration maxWait;
+
+    @Value("${media.visibility.poll-interval:20ms}")
+    private Duration pollInterval;
+
+    @Value("${media.visibility.send-timeout:5s}")
+    private Duration sendTimeout;
+
+    public WriteVisibilityService(RedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    private String getAppliedOffsetKey(String partition) {
+        return APPLIED_OFFSET_KEY_PREFIX + RedisKeys.tag(partition);
+    }
+
+    /**
+     * Waits for Kafka to acknowledge an event and returns its write token.
+     *
+     * @throws RuntimeException if the broker did not acknowledge the event within media.visibility.send-timeout.
+     */
+    public String awaitToken(CompletableFuture<? extends SendResult<?, ?>> send) {
+        try {
+            RecordMetadata metadata = send.get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS).getRecordMetadata();
+            return metadata.topic() + ":" + metadata.partition() + ":" + metadata.offset();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for Kafka", e);
+        } catch (Exception e) {
+            log.error("Error waiting for Kafka to acknowledge event: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to send event to Kafka", e);
+        }
+    }
+
+    /**
+     * Records that a record has been written to Redis. Call only after the write succeeded: the offset covers
+     * every earlier record of the partition. Failures are logged only and do not fail the consumer.
+     */
+    public void markApplied(ConsumerRecord<?, ?> record) {
+        String partition = record.topic() + ":" + record.partition();
+        localOffsets.merge(partition, record.offset(), Math::max);
+        try {
+            redisTemplate.execute(APPLIED_OFFSET_SCRIPT, List.of(getAppliedOffsetKey(partition)),
+                    String.valueOf(record.offset()));
+        } catch (Exception e) {
+            log.warn("Error recording applied offset {} of {}: {}", record.offset(), partition, e.getMessage());
+        }
+        synchronized (appliedSignal) {
+            appliedSignal.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until the write of a token is visible in Redis, for at most media.visibility.max-wait.
+     *
+     * @param token The write token returned by a write endpoint.
+     * @return Whether the write is visible.
+     * @throws IllegalArgumentException if the token is malformed.
+     */
+    public boolean awaitVisible(String token) {
+        String[] parts = token.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid write token: " + token);
+        }
+        String partition = parts[0] + ":" + parts[1];
+        long offset;
+        try {
+            offset = Long.parseLong(parts[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid write token: " + token);
+        }
+
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        try {
+            while (!isApplied(partition, offset)) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    log.debug("Write {} not visible after waiting", token);
+                    return false;
+                }
+                synchronized (appliedSignal) {
+                    appliedSignal.wait(Math.min(remainingMillis, pollInterval.toMillis()));
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean isApplied(String partition, long offset) {
+        Long local = localOffsets.get(partition);
+        if (local != null && local >= offset) {
+            return true;
+        }
+        String applied = redisTemplate.opsForValue().get(getAppliedOffsetKey(partition));
+        return applied != null && Long.parseLong(applied) >= offset;
+    }
+}
@@ -0,0 +1,8 @@
+-- Ghi offset lớn nhất đã ghi vào Redis của một partition (read-your-writes)
+-- KEYS[1]: readmodel:applied-offset:{<topic>:<partition>}   ARGV[1]: offset
+-- Không ghi đè offset lớn hơn: sau rebalance consumer có thể xử lý lại các record cũ
+local current = tonumber(redis.call('GET', KEYS[1]) or '-1')
+if tonumber(ARGV[1]) > current then
+    redis.call('SET', KEYS[1], ARGV[1])
+end
+return 1
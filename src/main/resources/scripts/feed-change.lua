@@ -0,0 +1,21 @@
+-- Ghi nhận một thay đổi của feed: tăng version và đánh dấu id với version mới trong change log
+-- KEYS[1]: <feed>:version   KEYS[2]: <feed>:changes (zset {id: version})   KEYS[3]: <feed>:changes-floor
+-- KEYS[4]: <feed>:epoch
+-- ARGV[1]: id của post/comment thay đổi, ARGV[2]: số id tối đa giữ trong change log, ARGV[3]: epoch mới
+local version = redis.call('INCR', KEYS[1])
+
+-- Counter vừa được tạo (lần đầu hoặc sau khi Redis bị flush): epoch mới để ETag cũ không khớp version mới
+if version == 1 or redis.call('EXISTS', KEYS[4]) == 0 then
+    redis.call('SET', KEYS[4], ARGV[3])
+end
+redis.call('ZADD', KEYS[2], version, ARGV[1])
+
+-- Cắt các thay đổi cũ nhất; floor là version lớn nhất đã bị cắt, client có since nhỏ hơn phải tải lại toàn bộ
+local excess = redis.call('ZCARD', KEYS[2]) - tonumber(ARGV[2])
+if excess > 0 then
+    local trimmed = redis.call('ZRANGE', KEYS[2], 0, excess - 1, 'WITHSCORES')
+    redis.call('SET', KEYS[3], trimmed[#trimmed])
+    redis.call('ZREMRANGEBYRANK', KEYS[2], 0, excess - 1)
+end
+
+return version
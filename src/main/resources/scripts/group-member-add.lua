@@ -0,0 +1,24 @@
+-- Thêm user vào group và bật các bit tương ứng trong Bloom filter trong cùng một bước,
+-- để filter trong Redis không bao giờ trả "không phải thành viên" cho một thành viên thật.
+-- KEYS[1]: group:users:{gid}
+-- KEYS[2]: group:{gid}:members:bloom        KEYS[3]: group:{gid}:members:bloom-bits
+-- KEYS[4]: group:{gid}:members:bloom-next   KEYS[5]: group:{gid}:members:bloom-next-bits
+-- ARGV[1]: userId, ARGV[2..]: vị trí bit thô (chưa mod kích thước filter)
+local added = redis.call('SADD', KEYS[1], ARGV[1])
+
+local bits = tonumber(redis.call('GET', KEYS[3]))
+if bits then
+    for i = 2, #ARGV do
+        redis.call('SETBIT', KEYS[2], tonumber(ARGV[i]) % bits, 1)
+    end
+end
+
+-- Filter đang được build lại (resize) cũng phải nhận thành viên mới
+local nextBits = tonumber(redis.call('GET', KEYS[5]))
+if nextBits then
+    for i = 2, #ARGV do
+        redis.call('SETBIT', KEYS[4], tonumber(ARGV[i]) % nextBits, 1)
+    end
+end
+
+return added
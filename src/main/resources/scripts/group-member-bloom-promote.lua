@@ -0,0 +1,16 @@
+-- Đưa filter vừa build xong vào sử dụng
+-- KEYS[1]: bloom, KEYS[2]: bloom-bits, KEYS[3]: bloom-next, KEYS[4]: bloom-next-bits, KEYS[5]: bloom-lock
+local nextBits = redis.call('GET', KEYS[4])
+if not nextBits then
+    return 0
+end
+
+if redis.call('EXISTS', KEYS[3]) == 1 then
+    redis.call('RENAME', KEYS[3], KEYS[1])
+else
+    -- Group rỗng: filter toàn bit 0
+    redis.call('DEL', KEYS[1])
+end
+redis.call('SET', KEYS[2], nextBits)
+redis.call('DEL', KEYS[4], KEYS[5])
+return 1
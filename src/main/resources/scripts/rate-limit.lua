@@ -0,0 +1,29 @@
+-- Token bucket dùng chung giữa các instance
+-- KEYS[1]: hash {tokens, ts}   ARGV[1]: dung lượng, ARGV[2]: số token nạp mỗi giây, ARGV[3]: số token cần
+-- Trả {1 nếu được phép / 0 nếu bị từ chối, số ms phải chờ khi bị từ chối}
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+
+-- Dùng đồng hồ của Redis để mọi instance tính refill giống nhau
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(bucket[1]) or capacity
+local ts = tonumber(bucket[2]) or now
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)
+
+local allowed = 0
+local retryAfter = 0
+if tokens >= requested then
+    tokens = tokens - requested
+    allowed = 1
+else
+    retryAfter = math.ceil((requested - tokens) * 1000 / rate)
+end
+
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+-- Bucket đầy lại sau capacity / rate giây, sau đó key không còn cần thiết
+redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)
+return {allowed, retryAfter}
@@ -0,0 +1,4 @@
+-- Một trang SSCAN bắt đầu từ cursor cho trước
+-- KEYS[1]: set
+-- ARGV[1]: cursor, ARGV[2]: COUNT
+return redis.call('SSCAN', KEYS[1], ARGV[1], 'COUNT', ARGV[2])
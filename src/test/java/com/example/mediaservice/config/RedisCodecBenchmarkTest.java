@@ -0,0 +1,96 @@
+package com.example.mediaservice.config;
+
+import com.example.mediaservice.dto.PostDto;
+import com.example.mediaservice.dto.UserDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.kafka.serializers.KafkaAvroDeserializer;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * So sánh chi phí lưu một giá trị JSON qua Avro serializer cũ (bọc schema-registry wire format)
+ * với codec chuỗi UTF-8 hiện tại: số byte lưu trong Redis và thời gian encode + decode mỗi giá trị.
+ * <p>
+ * Test chỉ kiểm tra số byte; thời gian phụ thuộc máy nên chỉ được ghi vào báo cáo
+ * target/loadtest/redis-codec-benchmark.json để so giữa các lần chạy, không dùng để assert. Chạy cùng
+ * load test: mvn -Ploadtest test.
+ */
+@Tag("loadtest")
+class RedisCodecBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisCodecBenchmarkTest.class);
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 100_000;
+    private static final Path RESULT_FILE = Path.of("target", "loadtest", "redis-codec-benchmark.json");
+
+    /**
+     * Kết quả của một codec
+     * @param bytes      số byte lưu trong Redis cho giá trị mẫu
+     * @param nanosPerOp thời gian trung bình một lần encode + decode
+     */
+    record CodecResult(int bytes, long nanosPerOp) {
+    }
+
+    @Test
+    void plainStringCodecStoresFewerBytesThanAvroWrapping() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonRedisCodec<PostDto> postCodec = new JsonRedisCodec<>(objectMapper, PostDto.class);
+        String json = postCodec.encode(new PostDto(
+                "post_5f0c8f2e-2b1d-4a51-9d8e-3c2b1a0f9e77",
+                "8d1f3c44-7a2b-4d9e-8f61-2b7c9e0a1d35",
+                "ch_0b9e7d52-6c1a-4f3e-a8d2-5e4c3b2a1f09",
+                new UserDto("alice@example.com", "Alice", "Nguyen", "1995-04-12", "FEMALE", null, "Engineer"),
+                "Hello team, the release notes for this sprint are in the general channel.",
+                3,
+                1760000000000L));
+
+        Map<String, String> config = Map.of("schema.registry.url", "mock://redis-codec-benchmark");
+        KafkaAvroSerializer avroSerializer = new KafkaAvroSerializer();
+        avroSerializer.configure(config, false);
+        KafkaAvroDeserializer avroDeserializer = new KafkaAvroDeserializer();
+        avroDeserializer.configure(config, false);
+        RedisSerializer<String> stringSerializer = RedisSerializer.string();
+
+        byte[] avroBytes = avroSerializer.serialize("redis-topic", json);
+        byte[] plainBytes = stringSerializer.serialize(json);
+
+        long avroNanos = measure(() -> avroDeserializer.deserialize("redis-topic", avroSerializer.serialize("redis-topic", json)));
+        long plainNanos = measure(() -> stringSerializer.deserialize(stringSerializer.serialize(json)));
+
+        log.info("Avro-wrapped string: {} bytes, {} ns/op", avroBytes.length, avroNanos / MEASURED_ITERATIONS);
+        log.info("Plain UTF-8 string:  {} bytes, {} ns/op", plainBytes.length, plainNanos / MEASURED_ITERATIONS);
+
+        Map<String, CodecResult> results = new LinkedHashMap<>();
+        results.put("avro", new CodecResult(avroBytes.length, avroNanos / MEASURED_ITERATIONS));
+        results.put("plain", new CodecResult(plainBytes.length, plainNanos / MEASURED_ITERATIONS));
+        Files.createDirectories(RESULT_FILE.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(RESULT_FILE.toFile(), results);
+
+        assertThat(avroDeserializer.deserialize("redis-topic", avroBytes).toString()).isEqualTo(json);
+        assertThat(plainBytes.length).isLessThan(avroBytes.length);
+    }
+
+    private static long measure(Runnable roundTrip) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            roundTrip.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            roundTrip.run();
+        }
+        return System.nanoTime() - start;
+    }
+}
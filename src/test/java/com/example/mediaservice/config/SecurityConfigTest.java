@@ -0,0 +1,107 @@
+package com.example.mediaservice.config;
+
+import com.example.mediaservice.controller.EventLogController;
+import com.example.mediaservice.controller.FreshnessController;
+import com.example.mediaservice.controller.RebuildController;
+import com.example.mediaservice.service.EventLogService;
+import com.example.mediaservice.service.FreshnessService;
+import com.example.mediaservice.service.RateLimitService;
+import com.example.mediaservice.service.ReadModelRebuildService;
+import com.example.mediaservice.service.TokenService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Các endpoint /admin chỉ cho realm role ADMIN của Keycloak (claim lồng nhau realm_access.roles).
+ */
+@WebMvcTest(controllers = {RebuildController.class, FreshnessController.class, EventLogController.class}, properties = "KEYCLOAK_URI=http://localhost:8080")
+@Import(SecurityConfig.class)
+class SecurityConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private JwtDecoder jwtDecoder;
+
+    @MockitoBean
+    private ReadModelRebuildService readModelRebuildService;
+
+    @MockitoBean
+    private FreshnessService freshnessService;
+
+    @MockitoBean
+    private EventLogService eventLogService;
+
+    @MockitoBean
+    private RateLimitService rateLimitService;
+
+    @MockitoBean
+    private TokenService tokenService;
+
+    @Test
+    void adminRealmRoleCanReadRebuildStatus() throws Exception {
+        when(jwtDecoder.decode("admin-token")).thenReturn(jwt("admin-token", List.of("ADMIN", "USER")));
+
+        mockMvc.perform(get("/admin/rebuild").header(HttpHeaders.AUTHORIZATION, "Bearer admin-token"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void userWithoutAdminRoleIsForbidden() throws Exception {
+        when(jwtDecoder.decode("user-token")).thenReturn(jwt("user-token", List.of("USER")));
+
+        mockMvc.perform(get("/admin/rebuild").header(HttpHeaders.AUTHORIZATION, "Bearer user-token"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void freshnessRequiresTheAdminRealmRole() throws Exception {
+        when(jwtDecoder.decode("admin-token")).thenReturn(jwt("admin-token", List.of("ADMIN")));
+        when(jwtDecoder.decode("user-token")).thenReturn(jwt("user-token", List.of("USER")));
+
+        mockMvc.perform(get("/admin/freshness").header(HttpHeaders.AUTHORIZATION, "Bearer admin-token"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/admin/freshness").header(HttpHeaders.AUTHORIZATION, "Bearer user-token"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void onlyAdminsCanTurnOnEventDebugLogging() throws Exception {
+        when(jwtDecoder.decode("admin-token")).thenReturn(jwt("admin-token", List.of("ADMIN")));
+        when(jwtDecoder.decode("user-token")).thenReturn(jwt("user-token", List.of("USER")));
+        when(eventLogService.enableDebug("post_1")).thenReturn(Instant.now().plusSeconds(600));
+
+        mockMvc.perform(post("/admin/event-log/debug/post_1").header(HttpHeaders.AUTHORIZATION, "Bearer user-token"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/admin/event-log/debug/post_1").header(HttpHeaders.AUTHORIZATION, "Bearer admin-token"))
+                .andExpect(status().isOk());
+    }
+
+    private static Jwt jwt(String token, List<String> realmRoles) {
+        return Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("user-1")
+                .claim("email", "user-1@example.com")
+                .claim("realm_access", Map.of("roles", realmRoles))
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .build();
+    }
+}
@@ -0,0 +1,398 @@
+package com.example.mediaservice.loadtest;
+
+import com.example.mediaservice.service.WriteVisibilityService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test đường ghi và đọc: app chạy với Kafka embedded và Redis trong Testcontainers, các worker gửi
+ * hỗn hợp request tạo post/comment và đọc feed trong loadtest.duration rồi đo throughput, p50/p99 theo loại
+ * request, consumer lag lớn nhất và thời gian consumer xử lý hết các event còn lại.
+ * <p>
+ * Chỉ chạy với profile loadtest: mvn -Ploadtest test [-Dloadtest.duration=60s -Dloadtest.threads=16
+ * -Dloadtest.groups=50]. Kết quả được ghi ra target/loadtest/report.json và so với
+ * src/test/resources/loadtest/baseline.json nếu có; thêm -Dloadtest.update-baseline=true để ghi kết quả làm
+ * baseline mới, -Dloadtest.fail-on-regression=true để test fail khi kém baseline quá loadtest.tolerance.
+ * Baseline chỉ được commit từ một lần chạy thật trên máy đo cố định.
+ */
+@Tag("loadtest")
+@ActiveProfiles({"mock-registry", "loadtest"})
+@Testcontainers(disabledWithoutDocker = true)
+@EmbeddedKafka(partitions = 3, kraft = true, bootstrapServersProperty = "spring.kafka.bootstrap-servers",
+        topics = {"post-created", "post-updated", "post-deleted", "comment-created", "comment-updated", "comment-deleted"})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class WritePathLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(WritePathLoadTest.class);
+
+    private static final Path REPORT_FILE = Path.of("target", "loadtest", "report.json");
+    private static final Path BASELINE_FILE = Path.of("src", "test", "resources", "loadtest", "baseline.json");
+    private static final int KNOWN_POSTS = 10_000;
+    private static final int AUTHORS = 100;
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(2);
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", REDIS::getHost);
+        registry.add("spring.data.redis.port", () -> REDIS.getMappedPort(6379));
+        registry.add("spring.data.redis.password", () -> "");
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry appMeterRegistry;
+
+    @Autowired
+    private WriteVisibilityService writeVisibilityService;
+
+    private final Duration duration = Duration.parse("PT" + System.getProperty("loadtest.duration", "60s").toUpperCase());
+    private final int threads = Integer.getInteger("loadtest.threads", 16);
+    private final int groups = Integer.getInteger("loadtest.groups", 50);
+    private final double tolerance = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.2"));
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final SimpleMeterRegistry latencies = new SimpleMeterRegistry();
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    // Vòng các post đã tạo, để request đọc và comment có đích; createdPosts chỉ tăng sau khi slot đã được ghi
+    private final Map<Integer, KnownPost> knownPosts = new ConcurrentHashMap<>();
+    private final AtomicInteger nextPostSlot = new AtomicInteger();
+    private final AtomicInteger createdPosts = new AtomicInteger();
+    private final AtomicReference<String> lastPostToken = new AtomicReference<>();
+    private final AtomicReference<String> lastCommentToken = new AtomicReference<>();
+    private final List<String> groupIds = new ArrayList<>();
+
+    /**
+     * Loại request và tỉ trọng trong hỗn hợp (tổng 100)
+     */
+    private enum Operation {
+        CREATE_POST(15),
+        CREATE_COMMENT(15),
+        GET_POST(35),
+        GET_COMMENTS(20),
+        GET_GROUP_POSTS(15);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+
+        static Operation pick(int roll) {
+            int cumulative = 0;
+            for (Operation operation : values()) {
+                cumulative += operation.weight;
+                if (roll < cumulative) {
+                    return operation;
+                }
+            }
+            return GET_POST;
+        }
+    }
+
+    private record KnownPost(String groupId, String postId) {
+    }
+
+    record OperationStats(long count, long errors, double throughputPerSecond,
+                          double p50Millis, double p99Millis, double maxMillis) {
+    }
+
+    record Report(Instant startedAt, long durationSeconds, int threads, int groups, double throughputPerSecond,
+                  Map<String, OperationStats> operations, long maxConsumerLag, long drainMillis,
+                  Map<String, Double> endToEndMeanMillis) {
+    }
+
+    @Test
+    void mixedWriteAndFeedLoad() throws Exception {
+        for (Operation operation : Operation.values()) {
+            errors.put(operation, new LongAdder());
+        }
+        seed();
+
+        AtomicLong maxLag = new AtomicLong();
+        ScheduledExecutorService lagSampler = Executors.newSingleThreadScheduledExecutor();
+        lagSampler.scheduleAtFixedRate(() -> maxLag.accumulateAndGet(currentLag(), Math::max), 1, 1, TimeUnit.SECONDS);
+
+        Instant startedAt = Instant.now();
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.submit(() -> runWorker(deadline));
+        }
+        workers.shutdown();
+        assertThat(workers.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS)).isTrue();
+        double elapsedSeconds = Duration.between(startedAt, Instant.now()).toMillis() / 1000.0;
+
+        long drainMillis = drain();
+        lagSampler.shutdownNow();
+
+        Report report = buildReport(startedAt, elapsedSeconds, maxLag.get(), drainMillis);
+        Files.createDirectories(REPORT_FILE.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(REPORT_FILE.toFile(), report);
+        log.info("Load test report:\n{}", objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+
+        List<String> regressions = compareWithBaseline(report);
+        if (Boolean.getBoolean("loadtest.update-baseline")) {
+            Files.createDirectories(BASELINE_FILE.getParent());
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(BASELINE_FILE.toFile(), report);
+            log.info("Wrote new baseline to {}", BASELINE_FILE);
+        }
+
+        long total = report.operations().values().stream().mapToLong(OperationStats::count).sum();
+        long failed = report.operations().values().stream().mapToLong(OperationStats::errors).sum();
+        assertThat(failed).as("failed requests").isLessThanOrEqualTo(total / 100);
+        assertThat(drainMillis).as("time to apply the remaining events").isLessThan(DRAIN_TIMEOUT.toMillis());
+        if (Boolean.getBoolean("loadtest.fail-on-regression")) {
+            assertThat(regressions).as("regressions against %s", BASELINE_FILE).isEmpty();
+        }
+    }
+
+    // Mỗi group một post, chờ tới khi đọc được để request đọc có đích ngay từ đầu. Request không có JWT nên
+    // application-loadtest.yml tắt media.membership.check-on-write
+    private void seed() throws Exception {
+        for (int i = 0; i < groups; i++) {
+            String groupId = "loadtest-group-" + i + "-" + UUID.randomUUID();
+            groupIds.add(groupId);
+        }
+        for (String groupId : groupIds) {
+            createPost(groupId);
+        }
+        assertThat(writeVisibilityService.awaitVisible(lastPostToken.get())).as("seed posts visible").isTrue();
+    }
+
+    private void runWorker(long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            Operation operation = Operation.pick(random.nextInt(100));
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                ok = execute(operation, random);
+            } catch (Exception e) {
+                ok = false;
+            }
+            timer(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!ok) {
+                errors.get(operation).increment();
+            }
+        }
+    }
+
+    private boolean execute(Operation operation, ThreadLocalRandom random) throws Exception {
+        return switch (operation) {
+            case CREATE_POST -> createPost(groupIds.get(random.nextInt(groupIds.size())));
+            case CREATE_COMMENT -> createComment(randomPost(random));
+            case GET_POST -> {
+                KnownPost post = randomPost(random);
+                yield get("/post/" + post.groupId() + "/" + post.postId());
+            }
+            case GET_COMMENTS -> get("/comment/post/" + randomPost(random).postId());
+            case GET_GROUP_POSTS -> get("/post/group/" + groupIds.get(random.nextInt(groupIds.size())));
+        };
+    }
+
+    private boolean createPost(String groupId) throws Exception {
+        Map<String, Object> post = Map.of(
+                "groupId", groupId,
+                "author", author(),
+                "content", "Load test post " + UUID.randomUUID());
+        HttpResponse<String> response = post("/post-events/create?writeToken=true", post);
+        if (response.statusCode() != 202) {
+            return false;
+        }
+        String postId = response.body().substring(response.body().lastIndexOf(' ') + 1);
+        knownPosts.put(nextPostSlot.getAndIncrement() % KNOWN_POSTS, new KnownPost(groupId, postId));
+        createdPosts.incrementAndGet();
+        response.headers().firstValue(WriteVisibilityService.WRITE_TOKEN_HEADER).ifPresent(lastPostToken::set);
+        return true;
+    }
+
+    private boolean createComment(KnownPost target) throws Exception {
+        Map<String, Object> comment = Map.of(
+                "postId", target.postId(),
+                "author", author(),
+                "content", "Load test comment " + UUID.randomUUID());
+        HttpResponse<String> response = post("/comment-events/create/comment?writeToken=true", comment);
+        response.headers().firstValue(WriteVisibilityService.WRITE_TOKEN_HEADER).ifPresent(lastCommentToken::set);
+        return response.statusCode() == 202;
+    }
+
+    // 404 là bình thường khi post vừa tạo chưa được consume
+    private boolean get(String path) throws Exception {
+        HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(uri(path)).GET().build(),
+                HttpResponse.BodyHandlers.discarding());
+        return response.statusCode() < 500;
+    }
+
+    private HttpResponse<String> post(String path, Object body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private KnownPost randomPost(ThreadLocalRandom random) {
+        int known = Math.min(createdPosts.get(), KNOWN_POSTS);
+        // Slot của một lần tạo song song có thể chưa được ghi; slot 0 luôn có từ lúc seed
+        KnownPost post = knownPosts.get(random.nextInt(known));
+        return post != null ? post : knownPosts.get(0);
+    }
+
+    private Map<String, Object> author() {
+        return Map.of(
+                "email", authorEmail(ThreadLocalRandom.current().nextInt(AUTHORS)),
+                "firstName", "Load",
+                "lastName", "Test",
+                "gender", "other",
+                "occupation", "tester");
+    }
+
+    private static String authorEmail(int author) {
+        return "loadtest-" + author + "@example.com";
+    }
+
+    private Timer timer(Operation operation) {
+        return Timer.builder("loadtest.request")
+                .tag("operation", operation.name())
+                .publishPercentiles(0.5, 0.99)
+                .register(latencies);
+    }
+
+    private long currentLag() {
+        return (long) appMeterRegistry.find("media.kafka.consumer.lag").gauges().stream()
+                .mapToDouble(Gauge::value)
+                .sum();
+    }
+
+    // Thời gian từ lúc dừng tải tới khi post và comment cuối cùng đã được ghi vào Redis
+    private long drain() {
+        long start = System.nanoTime();
+        long deadline = start + DRAIN_TIMEOUT.toNanos();
+        for (String token : new String[]{lastPostToken.get(), lastCommentToken.get()}) {
+            while (token != null && !writeVisibilityService.awaitVisible(token) && System.nanoTime() < deadline) {
+                log.info("Waiting for consumers, lag {}", currentLag());
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private Report buildReport(Instant startedAt, double elapsedSeconds, long maxLag, long drainMillis) {
+        Map<String, OperationStats> operations = new LinkedHashMap<>();
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            HistogramSnapshot snapshot = timer(operation).takeSnapshot();
+            operations.put(operation.name(), new OperationStats(
+                    snapshot.count(),
+                    errors.get(operation).sum(),
+                    snapshot.count() / elapsedSeconds,
+                    percentile(snapshot, 0.5),
+                    percentile(snapshot, 0.99),
+                    snapshot.max(TimeUnit.MILLISECONDS)));
+            total += snapshot.count();
+        }
+
+        Map<String, Double> endToEnd = new LinkedHashMap<>();
+        appMeterRegistry.find("media.event.end-to-end").timers()
+                .forEach(timer -> endToEnd.put(timer.getId().getTag("topic"), timer.mean(TimeUnit.MILLISECONDS)));
+
+        return new Report(startedAt, Math.round(elapsedSeconds), threads, groups, total / elapsedSeconds,
+                operations, maxLag, drainMillis, endToEnd);
+    }
+
+    private static double percentile(HistogramSnapshot snapshot, double percentile) {
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return Double.NaN;
+    }
+
+    // Throughput thấp hơn hoặc p99 cao hơn baseline quá tolerance
+    private List<String> compareWithBaseline(Report report) throws IOException {
+        List<String> regressions = new ArrayList<>();
+        if (!Files.exists(BASELINE_FILE)) {
+            log.info("No baseline at {}, run with -Dloadtest.update-baseline=true to record one", BASELINE_FILE);
+            return regressions;
+        }
+
+        Report baseline = objectMapper.readValue(BASELINE_FILE.toFile(), Report.class);
+        report.operations().forEach((name, current) -> {
+            OperationStats previous = baseline.operations().get(name);
+            if (previous == null) {
+                return;
+            }
+            if (current.throughputPerSecond() < previous.throughputPerSecond() * (1 - tolerance)) {
+                regressions.add(String.format("%s throughput %.1f/s, baseline %.1f/s",
+                        name, current.throughputPerSecond(), previous.throughputPerSecond()));
+            }
+            if (current.p99Millis() > previous.p99Millis() * (1 + tolerance)) {
+                regressions.add(String.format("%s p99 %.1f ms, baseline %.1f ms",
+                        name, current.p99Millis(), previous.p99Millis()));
+            }
+        });
+        regressions.forEach(regression -> log.warn("Regression: {}", regression));
+        return regressions;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.mediaservice.service;
+
+import com.example.mediaservice.config.JsonRedisCodec;
+import com.example.mediaservice.dto.PostDto;
+import com.example.mediaservice.entity.Post;
+import com.example.mediaservice.entity.User;
+import com.example.mediaservice.producer.StateProducerService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replay các topic qua MockConsumer vào một Redis thật (Testcontainers), kiểm tra kết quả ghi của rebuild.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ReadModelRebuildServiceTest {
+
+    private static final List<String> TOPICS = List.of(
+            "user-create", "group-created", "channel-created", "user-group-create", "user-group-join",
+            "user-channel-events", "user-update", "group-updated", "channel-updated",
+            "post-created", "comment-created", "post-updated", "comment-updated", "post-deleted", "comment-deleted",
+            StateProducerService.POST_STATE_TOPIC, StateProducerService.COMMENT_STATE_TOPIC);
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private PostRedisService postRedisService;
+    private ReplayConsumer consumer;
+    private ReadModelRebuildService rebuildService;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+
+        postRedisService = new PostRedisService(redisTemplate, new JsonRedisCodec<>(new ObjectMapper(), PostDto.class),
+                mock(FeedChangeService.class));
+        consumer = new ReplayConsumer();
+
+        @SuppressWarnings("unchecked")
+        ConsumerFactory<Object, Object> consumerFactory = mock(ConsumerFactory.class);
+        when(consumerFactory.createConsumer(any(), any(), any(), any())).thenReturn(consumer);
+
+        rebuildService = new ReadModelRebuildService(consumerFactory, mock(KafkaListenerEndpointRegistry.class),
+                redisTemplate, mock(UserRedisService.class), mock(GroupRedisService.class), mock(ChannelRedisService.class),
+                mock(UserGroupRedisService.class), mock(UserChannelRedisService.class), postRedisService,
+                mock(CommentRedisService.class), mock(GroupMembershipService.class), mock(TimelineRedisService.class),
+                mock(StateProducerService.class));
+        ReflectionTestUtils.setField(rebuildService, "pollTimeout", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(rebuildService, "listenerPauseTimeout", Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        rebuildService.shutdown();
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void replayedUpdateWithoutCreatedAtKeepsTheIndexedCreatedAt() throws InterruptedException {
+        long createdAt = 1_700_000_000_000L;
+        consumer.add("post-created", post(createdAt, "first version"));
+        consumer.add("post-updated", post(0, "edited"));
+        consumer.prepare(TOPICS);
+
+        assertThat(rebuildService.start()).isTrue();
+        awaitFinished();
+
+        assertThat(rebuildService.getStatus().state()).isEqualTo("COMPLETED");
+        PostDto stored = postRedisService.getPostById("group-1", "post-1");
+        assertThat(stored.content()).isEqualTo("edited");
+        assertThat(stored.createdAt()).isEqualTo(createdAt);
+        assertThat(postRedisService.getIndexedCreatedAt(Map.of("group-1", List.of("post-1"))))
+                .containsEntry("post-1", createdAt);
+    }
+
+    private void awaitFinished() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!"COMPLETED".equals(rebuildService.getStatus().state())
+                && !"FAILED".equals(rebuildService.getStatus().state())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static Post post(long createdAt, String content) {
+        return Post.newBuilder()
+                .setId("post-1")
+                .setGroupId("group-1")
+                .setChannelId(null)
+                .setAuthor(User.newBuilder()
+                        .setEmail("alice@example.com")
+                        .setFirstName("Alice")
+                        .setLastName("Nguyen")
+                        .setGender("FEMALE")
+                        .setOccupation("Engineer")
+                        .build())
+                .setContent(content)
+                .setLikes(0)
+                .setCreatedAt(createdAt)
+                .build();
+    }
+
+    /**
+     * MockConsumer chỉ nhận record của partition đang được assign: record của mỗi topic được nạp khi rebuild
+     * assign partition của phase chứa topic đó.
+     */
+    private static final class ReplayConsumer extends MockConsumer<Object, Object> {
+
+        private final Map<TopicPartition, List<ConsumerRecord<Object, Object>>> pending = new HashMap<>();
+
+        ReplayConsumer() {
+            super(OffsetResetStrategy.EARLIEST);
+        }
+
+        void add(String topic, Object value) {
+            TopicPartition partition = new TopicPartition(topic, 0);
+            List<ConsumerRecord<Object, Object>> records = pending.computeIfAbsent(partition, ignored -> new ArrayList<>());
+            records.add(new ConsumerRecord<>(topic, 0, records.size(), "post-1", value));
+        }
+
+        void prepare(List<String> topics) {
+            Map<TopicPartition, Long> beginnings = new HashMap<>();
+            Map<TopicPartition, Long> ends = new HashMap<>();
+            for (String topic : topics) {
+                TopicPartition partition = new TopicPartition(topic, 0);
+                updatePartitions(topic, List.of(new PartitionInfo(topic, 0, null, null, null)));
+                beginnings.put(partition, 0L);
+                ends.put(partition, (long) pending.getOrDefault(partition, List.of()).size());
+            }
+            updateBeginningOffsets(beginnings);
+            updateEndOffsets(ends);
+        }
+
+        @Override
+        public synchronized void assign(Collection<TopicPartition> partitions) {
+            super.assign(partitions);
+            for (TopicPartition partition : partitions) {
+                pending.getOrDefault(partition, List.of()).forEach(this::addRecord);
+            }
+        }
+    }
+}